@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "4.0.0"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.dark"
@@ -38,17 +39,50 @@ dependencies {
 	testImplementation("org.springframework.boot:spring-boot-starter-validation-test")
 	testImplementation("org.springframework.boot:spring-boot-starter-webmvc-test")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
-    // 1. MACHINE LEARNING (Smile)
-    implementation("com.github.haifengl:smile-core:3.0.2")
-    // 2. REPORTES PDF (OpenPDF)
+    // 1. REPORTES PDF (OpenPDF)
     implementation("com.github.librepdf:openpdf:1.3.30")
-    // 3. REPORTES EXCEL (Apache POI)
+    // 2. REPORTES EXCEL (Apache POI)
     implementation("org.apache.poi:poi-ooxml:5.2.3")
-    implementation("org.bytedeco:openblas-platform:0.3.21-1.5.8")
+    // 3. EXPORTACIÓN COLUMNAR (Apache Arrow IPC)
+    implementation("org.apache.arrow:arrow-vector:18.1.0")
+    runtimeOnly("org.apache.arrow:arrow-memory-netty:18.1.0")
 
     implementation("org.springdoc:springdoc-openapi-starter-webmvc-ui:2.8.14")
+
+    // 4. BENCHMARKS: Smile (con OpenBLAS) solo como referencia de RegressionKernelBenchmark;
+    // la aplicación ajusta sus modelos con el núcleo de forma cerrada y no carga librerías nativas
+    jmh("com.github.haifengl:smile-core:3.0.2")
+    jmh("org.bytedeco:openblas-platform:0.3.21-1.5.8")
+}
+
+// Vector API (incubadora) para el núcleo SIMD de Montecarlo; sin el módulo se usa el núcleo escalar.
+// El manifiesto del bootJar no admite Add-Modules: con java -jar el flag se pasa en la línea de comandos (README)
+val vectorModuleArgs = listOf("--add-modules=jdk.incubator.vector")
+// Apache Arrow accede a los búferes directos de java.nio
+val arrowJvmArgs = listOf("--add-opens=java.base/java.nio=ALL-UNNAMED")
+
+tasks.withType<JavaCompile> {
+	options.compilerArgs.addAll(vectorModuleArgs)
 }
 
 tasks.withType<Test> {
 	useJUnitPlatform()
+	jvmArgs(vectorModuleArgs + arrowJvmArgs)
+}
+
+tasks.named<org.springframework.boot.gradle.tasks.run.BootRun>("bootRun") {
+	jvmArgs(vectorModuleArgs + arrowJvmArgs)
+}
+
+// java -jar lee Add-Opens del manifiesto: el jar empaquetado abre java.nio para Arrow sin flags adicionales
+tasks.named<org.springframework.boot.gradle.tasks.bundling.BootJar>("bootJar") {
+	manifest {
+		attributes("Add-Opens" to "java.base/java.nio")
+	}
+}
+
+// Benchmarks JMH (src/jmh/java): ./gradlew jmh [-Pjmh.includes=<regex>]
+jmh {
+	jvmArgs.addAll(vectorModuleArgs)
+	providers.gradleProperty("jmh.includes").orNull?.let { includes.add(it) }
 }
@@ -0,0 +1,80 @@
+package com.dark.dss.analytics;
+
+import com.dark.dss.entity.Metric;
+import org.openjdk.jmh.annotations.*;
+import smile.data.DataFrame;
+import smile.data.formula.Formula;
+import smile.data.vector.DoubleVector;
+import smile.regression.OLS;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ajuste + predicción de un producto: ruta anterior de predictSales (arreglos construidos con streams,
+ * DataFrame, Formula y OLS de Smile) frente al núcleo de forma cerrada sobre arreglos primitivos.
+ * Ejecutar con: ./gradlew jmh -Pjmh.includes=RegressionKernelBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegressionKernelBenchmark {
+
+    private static final double FUTURE_AD_SPEND = 1000.0;
+
+    @Param({"30", "365", "5000"})
+    public int samples;
+
+    private List<Metric> history;
+    private double[] adSpend;
+    private double[] salesUnits;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        history = new ArrayList<>(samples);
+        adSpend = new double[samples];
+        salesUnits = new double[samples];
+        for (int i = 0; i < samples; i++) {
+            double x = 200.0 + 1800.0 * random.nextDouble();
+            int y = (int) Math.round(40.0 + 0.35 * x + random.nextGaussian() * 25.0);
+            history.add(new Metric(null, LocalDate.of(2024, 1, 1).plusDays(i), y, x, y * 19.9, null));
+            adSpend[i] = x;
+            salesUnits[i] = y;
+        }
+    }
+
+    // Ruta anterior: dos streams a double[], DataFrame, Formula y OLS de Smile
+    @Benchmark
+    public double smileDataFrame() {
+        double[] x = history.stream().mapToDouble(Metric::getAdSpend).toArray();
+        double[] y = history.stream().mapToDouble(Metric::getSalesUnits).toArray();
+
+        DataFrame df = DataFrame.of(
+                DoubleVector.of("AdSpend", x),
+                DoubleVector.of("SalesUnits", y)
+        );
+        var model = OLS.fit(Formula.of("SalesUnits", "AdSpend"), df);
+        return model.predict(new double[]{FUTURE_AD_SPEND});
+    }
+
+    // Núcleo de una pasada sobre las mismas entidades (solo evita DataFrame/Formula/OLS)
+    @Benchmark
+    public double closedFormFromEntities() {
+        double[] x = history.stream().mapToDouble(Metric::getAdSpend).toArray();
+        double[] y = history.stream().mapToDouble(Metric::getSalesUnits).toArray();
+        return LinearRegressionKernel.fit(x, y).predict(FUTURE_AD_SPEND);
+    }
+
+    // Núcleo de una pasada sobre arreglos primitivos ya cargados (sin asignaciones intermedias)
+    @Benchmark
+    public double closedFormKernel() {
+        return LinearRegressionKernel.fit(adSpend, salesUnits, samples).predict(FUTURE_AD_SPEND);
+    }
+}
@@ -0,0 +1,46 @@
+package com.dark.dss.analytics;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput por núcleo de los núcleos de Montecarlo (un solo hilo, sin fork/join).
+ * Cada operación simula BLOCK escenarios; la ganancia del vectorial es el cociente ops/s vector / scalar.
+ * Ejecutar con: ./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class RiskKernelBenchmark {
+
+    private static final long BLOCK = 1L << 16;
+
+    @Param({"scalar", "vector"})
+    public String kernelName;
+
+    private RiskKernel kernel;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() {
+        kernel = RiskKernels.select(kernelName);
+        if (!kernel.name().equals(kernelName)) {
+            throw new IllegalStateException("Núcleo " + kernelName + " no disponible en esta JVM");
+        }
+        random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1 << 16)
+    public long simulateBlock() {
+        RiskAccumulator accumulator = new RiskAccumulator(10.0, 9.0);
+        kernel.simulate(10.0, 9.0, BLOCK, random, accumulator);
+        return accumulator.total();
+    }
+}
@@ -0,0 +1,142 @@
+package com.dark.dss.service;
+
+import com.dark.dss.DssGlobalLineApplication;
+import com.dark.dss.entity.Client;
+import com.dark.dss.entity.Metric;
+import com.dark.dss.entity.Product;
+import com.dark.dss.repository.ClientRepository;
+import com.dark.dss.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingesta de métricas por la ruta real de la carga de Excel: contexto de Spring, Hibernate y MetricBulkWriter
+ * dentro de una transacción, contra la tabla metrics de la base configurada en application.properties.
+ * - jdbcBatchSize = 50: configuración actual (lotes JDBC de 50 reescritos como INSERT multi-fila).
+ * - jdbcBatchSize = 0: mismos IDs de secuencia pero sin lotes, un INSERT por fila.
+ * Cada operación inserta ROWS filas de un producto propio del benchmark; el resultado se expresa en filas/s.
+ * Al final de cada iteración se imprimen las sentencias preparadas por fila según las estadísticas de Hibernate.
+ * Requiere un PostgreSQL en marcha. Ejecutar con: ./gradlew jmh -Pjmh.includes=MetricIngestBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class MetricIngestBenchmark {
+
+    private static final int ROWS = 1000;
+
+    @Param({"0", "50"})
+    public int jdbcBatchSize;
+
+    private ConfigurableApplicationContext context;
+    private MetricBulkWriter bulkWriter;
+    private ProductRepository productRepository;
+    private TransactionTemplate transactionTemplate;
+    private JdbcTemplate jdbcTemplate;
+    private Statistics statistics;
+
+    private Long clientId;
+    private Long productId;
+    private LocalDate[] dates;
+    private int[] salesUnits;
+    private double[] adSpend;
+    private long rowsInIteration;
+
+    @Setup
+    public void setup() {
+        context = new SpringApplicationBuilder(DssGlobalLineApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=" + jdbcBatchSize,
+                        "spring.jpa.properties.hibernate.generate_statistics=true",
+                        "spring.jpa.show-sql=false")
+                .run();
+        bulkWriter = context.getBean(MetricBulkWriter.class);
+        productRepository = context.getBean(ProductRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        statistics = context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+
+        Client client = new Client();
+        client.setName("Benchmark ingesta");
+        client.setEmail("bench@dss.local");
+        client.setPhone("0000000000");
+        clientId = context.getBean(ClientRepository.class).save(client).getId();
+
+        Product product = new Product();
+        product.setAsin("BENCH-" + System.nanoTime());
+        product.setName("Producto benchmark");
+        product.setPrice(19.9);
+        product.setCost(11.0);
+        product.setClient(client);
+        productId = productRepository.save(product).getId();
+
+        SplittableRandom random = new SplittableRandom(42);
+        dates = new LocalDate[ROWS];
+        salesUnits = new int[ROWS];
+        adSpend = new double[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            dates[i] = LocalDate.of(2024, 1, 1).plusDays(i);
+            adSpend[i] = 200.0 + 1800.0 * random.nextDouble();
+            salesUnits[i] = (int) Math.round(40.0 + 0.35 * adSpend[i] + random.nextGaussian() * 25.0);
+        }
+    }
+
+    // Las métricas del benchmark se borran entre iteraciones para que el tamaño del índice no sesgue las
+    // mediciones posteriores
+    @Setup(Level.Iteration)
+    public void reset() {
+        jdbcTemplate.update("DELETE FROM metrics WHERE product_id = ?", productId);
+        statistics.clear();
+        rowsInIteration = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void report() {
+        if (rowsInIteration == 0) return;
+        System.out.printf("jdbcBatchSize=%d: %d filas, %.3f sentencias preparadas por fila%n",
+                jdbcBatchSize, statistics.getEntityInsertCount(),
+                (double) statistics.getPrepareStatementCount() / rowsInIteration);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.update("DELETE FROM metrics WHERE product_id = ?", productId);
+        jdbcTemplate.update("DELETE FROM products WHERE id = ?", productId);
+        jdbcTemplate.update("DELETE FROM clients WHERE id = ?", clientId);
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int ingest() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Product product = productRepository.getReferenceById(productId);
+            List<Metric> metrics = new ArrayList<>(ROWS);
+            for (int i = 0; i < ROWS; i++) {
+                metrics.add(new Metric(null, dates[i], salesUnits[i], adSpend[i], salesUnits[i] * 19.9, product));
+            }
+            bulkWriter.write(metrics);
+        });
+        rowsInIteration += ROWS;
+        return ROWS;
+    }
+}
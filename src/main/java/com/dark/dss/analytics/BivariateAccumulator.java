@@ -0,0 +1,100 @@
+package com.dark.dss.analytics;
+
+/**
+ * Acumulador en línea (Welford) de dos variables: medias, sumas de cuadrados centradas y co-momento.
+ * Es numéricamente estable con series largas, admite agregar y quitar observaciones (ventanas deslizantes)
+ * y combinar acumuladores parciales (fórmula de Chan) calculados en paralelo.
+ */
+public final class BivariateAccumulator {
+
+    private long count;
+    private double meanX;
+    private double meanY;
+    private double m2X;
+    private double m2Y;
+    private double coMoment;
+
+    public void add(double x, double y) {
+        count++;
+        double dx = x - meanX;
+        double dy = y - meanY;
+        meanX += dx / count;
+        meanY += dy / count;
+        m2X += dx * (x - meanX);
+        m2Y += dy * (y - meanY);
+        coMoment += dx * (y - meanY);
+    }
+
+    // Operación inversa de add(): la observación debe haberse agregado antes
+    public void remove(double x, double y) {
+        if (count <= 1) {
+            reset();
+            return;
+        }
+        long remaining = count - 1;
+        double previousMeanX = (count * meanX - x) / remaining;
+        double previousMeanY = (count * meanY - y) / remaining;
+        m2X -= (x - previousMeanX) * (x - meanX);
+        m2Y -= (y - previousMeanY) * (y - meanY);
+        coMoment -= (x - previousMeanX) * (y - meanY);
+        meanX = previousMeanX;
+        meanY = previousMeanY;
+        count = remaining;
+    }
+
+    public BivariateAccumulator merge(BivariateAccumulator other) {
+        if (other.count == 0) return this;
+        if (count == 0) {
+            copyFrom(other);
+            return this;
+        }
+        long total = count + other.count;
+        double dx = other.meanX - meanX;
+        double dy = other.meanY - meanY;
+        double weight = (double) count * other.count / total;
+        m2X += other.m2X + dx * dx * weight;
+        m2Y += other.m2Y + dy * dy * weight;
+        coMoment += other.coMoment + dx * dy * weight;
+        meanX += dx * other.count / total;
+        meanY += dy * other.count / total;
+        count = total;
+        return this;
+    }
+
+    public void reset() {
+        count = 0;
+        meanX = 0;
+        meanY = 0;
+        m2X = 0;
+        m2Y = 0;
+        coMoment = 0;
+    }
+
+    private void copyFrom(BivariateAccumulator other) {
+        count = other.count;
+        meanX = other.meanX;
+        meanY = other.meanY;
+        m2X = other.m2X;
+        m2Y = other.m2Y;
+        coMoment = other.coMoment;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    // Coeficiente de Pearson (r). NaN si alguna de las dos variables no tiene variación.
+    public double correlation() {
+        double denominator = Math.sqrt(Math.max(0.0, m2X) * Math.max(0.0, m2Y));
+        if (count < 2 || denominator == 0.0) {
+            return Double.NaN;
+        }
+        return Math.max(-1.0, Math.min(1.0, coMoment / denominator));
+    }
+
+    // Recta OLS y = intercepto + pendiente * x con su R²
+    public RegressionModel toModel() {
+        return LinearRegressionKernel.fromCenteredSums(count, meanX, meanY,
+                Math.max(0.0, m2X), Math.max(0.0, m2Y), coMoment);
+    }
+}
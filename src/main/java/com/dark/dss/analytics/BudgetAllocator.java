@@ -0,0 +1,206 @@
+package com.dark.dss.analytics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.DoubleAccumulator;
+
+/**
+ * Reparto de un presupuesto publicitario entre productos con respuesta lineal recortada y tope:
+ * ingreso_i(x) = price_i * max(0, intercept_i + slope_i * x), con 0 <= x <= cap_i.
+ * - Sin cruce por cero (intercepto >= 0) cada dólar rinde price * slope: el óptimo llena esos tramos de mayor a
+ *   menor rendimiento (voraz exacto).
+ * - Con intercepto negativo el producto no vende hasta el cruce z = -intercept / slope: financiarlo cuesta z fijos
+ *   y después rinde como un tramo lineal. Para cada subconjunto de estos productos el resto es el mismo llenado
+ *   voraz, así que el óptimo es el mejor subconjunto.
+ * OPTIMIZACIÓN: Los subconjuntos se recorren con ramificación y acotamiento sobre fork/join. La cota de un nodo es
+ * el llenado voraz en el que cada producto con cruce aún sin decidir se reemplaza por la cuerda de (0, 0) a su tope
+ * (rendimiento medio en [0, tope]), que nunca queda por debajo de su ingreso real. Las ramas cuya cota no alcanza
+ * la mejor solución ya encontrada (compartida entre tareas) se descartan.
+ * Se buscan de forma exacta los MAX_EXACT_CROSSINGS productos con cruce de mayor rendimiento medio; si hay más, los
+ * restantes no reciben presupuesto y el resultado se marca como no exacto.
+ */
+public final class BudgetAllocator {
+
+    public static final int MAX_EXACT_CROSSINGS = 16;
+
+    // Con pocos productos con cruce por decidir, la rama se recorre en el hilo actual (2^6 nodos como máximo)
+    private static final int SEQUENTIAL_DEPTH = 6;
+
+    private static final int LINEAR = 0;
+    private static final int AFTER_CROSSING = 1;
+    private static final int CHORD = 2;
+
+    public record Item(double intercept, double slope, double price, double cap) {
+
+        // Inversión a partir de la cual las unidades previstas son positivas (0 si el intercepto no es negativo)
+        public double zeroCrossing() {
+            return intercept < 0 && slope > 0 ? -intercept / slope : 0.0;
+        }
+    }
+
+    // spend[i]: inversión asignada a items[i]; exact = false si se descartaron productos con cruce sin evaluarlos
+    public record Allocation(double[] spend, boolean exact) {
+    }
+
+    // Tramo lineal del llenado voraz; crossing = índice del producto con cruce dueño del tramo (-1 si no tiene)
+    private record Piece(int item, int kind, int crossing, double length, double rate) {
+    }
+
+    private record Best(double value, long mask) {
+        Best max(Best other) {
+            if (other.value > value || (other.value == value && other.mask < mask)) return other;
+            return this;
+        }
+    }
+
+    private final double budget;
+    private final double[] crossingCosts;
+    private final Piece[] pieces;
+    private final DoubleAccumulator incumbent = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+    private BudgetAllocator(double budget, double[] crossingCosts, Piece[] pieces) {
+        this.budget = budget;
+        this.crossingCosts = crossingCosts;
+        this.pieces = pieces;
+    }
+
+    public static Allocation allocate(Item[] items, double budget) {
+        List<Piece> pieces = new ArrayList<>();
+        List<Integer> crossings = new ArrayList<>();
+        for (int i = 0; i < items.length; i++) {
+            Item item = items[i];
+            double rate = item.price() * item.slope();
+            // Pendiente nula o negativa: invertir no aumenta el ingreso
+            if (!(rate > 0) || !(item.cap() > 0)) continue;
+
+            double zeroCrossing = item.zeroCrossing();
+            if (zeroCrossing == 0.0) {
+                pieces.add(new Piece(i, LINEAR, -1, item.cap(), rate));
+            } else if (zeroCrossing < item.cap() && zeroCrossing < budget) {
+                crossings.add(i);
+            }
+        }
+
+        // Productos con cruce ordenados por rendimiento medio en [0, tope]; solo los primeros se deciden
+        crossings.sort(Comparator.comparingDouble((Integer i) -> -chordRate(items[i])).thenComparingInt(i -> i));
+        boolean exact = crossings.size() <= MAX_EXACT_CROSSINGS;
+        int searched = Math.min(crossings.size(), MAX_EXACT_CROSSINGS);
+        double[] crossingCosts = new double[searched];
+        for (int c = 0; c < searched; c++) {
+            Item item = items[crossings.get(c)];
+            double zeroCrossing = item.zeroCrossing();
+            crossingCosts[c] = zeroCrossing;
+            pieces.add(new Piece(crossings.get(c), AFTER_CROSSING, c, item.cap() - zeroCrossing, item.price() * item.slope()));
+            pieces.add(new Piece(crossings.get(c), CHORD, c, item.cap(), chordRate(item)));
+        }
+        pieces.sort(Comparator.comparingDouble((Piece piece) -> -piece.rate()).thenComparingInt(Piece::item));
+
+        BudgetAllocator allocator = new BudgetAllocator(budget, crossingCosts, pieces.toArray(Piece[]::new));
+        long mask = searched <= SEQUENTIAL_DEPTH
+                ? allocator.search(0, 0L, 0.0).mask()
+                : ForkJoinPool.commonPool().invoke(allocator.new SearchTask(0, 0L, 0.0)).mask();
+        return new Allocation(allocator.spendFor(mask, items.length), exact);
+    }
+
+    private static double chordRate(Item item) {
+        return item.price() * (item.intercept() + item.slope() * item.cap()) / item.cap();
+    }
+
+    // Recorrido en profundidad: primero financiar el producto con cruce `depth`, después no financiarlo
+    private Best search(int depth, long mask, double fixedCost) {
+        Best best = new Best(fill(mask, fixedCost, crossingCosts.length), mask);
+        incumbent.accumulate(best.value());
+        if (depth == crossingCosts.length || prune(fill(mask, fixedCost, depth))) {
+            return best;
+        }
+        if (fixedCost + crossingCosts[depth] < budget) {
+            best = best.max(search(depth + 1, mask | (1L << depth), fixedCost + crossingCosts[depth]));
+        }
+        return best.max(search(depth + 1, mask, fixedCost));
+    }
+
+    // Margen de redondeo: una rama que empata con la mejor solución no se descarta, así el resultado no depende
+    // del orden en que terminan las tareas
+    private boolean prune(double bound) {
+        double best = incumbent.get();
+        return bound < best - 1e-9 * Math.max(1.0, Math.abs(best));
+    }
+
+    private final class SearchTask extends RecursiveTask<Best> {
+        private final int depth;
+        private final long mask;
+        private final double fixedCost;
+
+        SearchTask(int depth, long mask, double fixedCost) {
+            this.depth = depth;
+            this.mask = mask;
+            this.fixedCost = fixedCost;
+        }
+
+        @Override
+        protected Best compute() {
+            if (crossingCosts.length - depth <= SEQUENTIAL_DEPTH) {
+                return search(depth, mask, fixedCost);
+            }
+            Best best = new Best(fill(mask, fixedCost, crossingCosts.length), mask);
+            incumbent.accumulate(best.value());
+            if (prune(fill(mask, fixedCost, depth))) {
+                return best;
+            }
+
+            SearchTask include = fixedCost + crossingCosts[depth] < budget
+                    ? new SearchTask(depth + 1, mask | (1L << depth), fixedCost + crossingCosts[depth])
+                    : null;
+            SearchTask exclude = new SearchTask(depth + 1, mask, fixedCost);
+            if (include != null) include.fork();
+            best = best.max(exclude.compute());
+            return include != null ? best.max(include.join()) : best;
+        }
+    }
+
+    /**
+     * Ingreso adicional del llenado voraz: tramos lineales, tramos posteriores al cruce de los productos financiados
+     * (mask) y, como cota, la cuerda de los productos con cruce desde `undecided` en adelante.
+     * Con undecided = crossingCosts.length no hay cuerdas y el valor es el de una asignación factible.
+     */
+    private double fill(long mask, double fixedCost, int undecided) {
+        double remaining = budget - fixedCost;
+        double value = 0.0;
+        for (Piece piece : pieces) {
+            if (remaining <= 0) break;
+            if (!includes(piece, mask, undecided)) continue;
+            double take = Math.min(remaining, piece.length());
+            value += take * piece.rate();
+            remaining -= take;
+        }
+        return value;
+    }
+
+    private static boolean includes(Piece piece, long mask, int undecided) {
+        return switch (piece.kind()) {
+            case LINEAR -> true;
+            case AFTER_CROSSING -> (mask & (1L << piece.crossing())) != 0;
+            default -> piece.crossing() >= undecided;
+        };
+    }
+
+    // Inversión por producto de la mejor combinación; un producto financiado sin presupuesto tras su cruce queda en 0
+    private double[] spendFor(long mask, int itemCount) {
+        double[] spend = new double[itemCount];
+        double remaining = budget;
+        for (int c = 0; c < crossingCosts.length; c++) {
+            if ((mask & (1L << c)) != 0) remaining -= crossingCosts[c];
+        }
+        for (Piece piece : pieces) {
+            if (remaining <= 0) break;
+            if (piece.kind() == CHORD || !includes(piece, mask, crossingCosts.length)) continue;
+            double take = Math.min(remaining, piece.length());
+            spend[piece.item()] += piece.kind() == AFTER_CROSSING ? crossingCosts[piece.crossing()] + take : take;
+            remaining -= take;
+        }
+        return spend;
+    }
+}
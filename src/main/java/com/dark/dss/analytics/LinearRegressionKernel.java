@@ -0,0 +1,66 @@
+package com.dark.dss.analytics;
+
+/**
+ * Núcleo de regresión lineal sobre arreglos primitivos.
+ * Para un solo predictor (AdSpend → SalesUnits) ajusta la recta OLS en forma cerrada con una pasada
+ * (Welford) y sin reservar memoria intermedia: ni arreglos copiados, ni DataFrame, ni Formula, ni BLAS.
+ */
+public final class LinearRegressionKernel {
+
+    private LinearRegressionKernel() {
+    }
+
+    // Ajuste de una sola pasada sobre las primeras `length` posiciones de x e y
+    public static RegressionModel fit(double[] x, double[] y, int length) {
+        if (length > x.length || length > y.length) {
+            throw new IllegalArgumentException("La longitud excede el tamaño de los arreglos.");
+        }
+
+        double meanX = 0.0;
+        double meanY = 0.0;
+        double sxx = 0.0;
+        double syy = 0.0;
+        double sxy = 0.0;
+        for (int i = 0; i < length; i++) {
+            double dx = x[i] - meanX;
+            double dy = y[i] - meanY;
+            meanX += dx / (i + 1);
+            meanY += dy / (i + 1);
+            sxx += dx * (x[i] - meanX);
+            syy += dy * (y[i] - meanY);
+            sxy += dx * (y[i] - meanY);
+        }
+        return fromCenteredSums(length, meanX, meanY, sxx, syy, sxy);
+    }
+
+    public static RegressionModel fit(double[] x, double[] y) {
+        return fit(x, y, Math.min(x.length, y.length));
+    }
+
+    /**
+     * Coeficientes OLS a partir de medias y sumas centradas: pendiente = Sxy / Sxx, intercepto = ȳ - pendiente * x̄.
+     * En regresión simple el R² coincide con el cuadrado de la correlación de Pearson.
+     * Lo comparten el ajuste sobre arreglos y los acumuladores (SufficientStatistics, BivariateAccumulator).
+     */
+    public static RegressionModel fromCenteredSums(long count, double meanX, double meanY,
+                                                   double sxx, double syy, double sxy) {
+        if (count < 2 || sxx <= 0.0) {
+            throw new RuntimeException("No hay variación en la inversión publicitaria; no es posible ajustar el modelo.");
+        }
+
+        double slope = sxy / sxx;
+        double intercept = meanY - slope * meanX;
+        double rSquared = syy <= 0.0 ? 0.0 : Math.min(1.0, (sxy * sxy) / (sxx * syy));
+
+        return new RegressionModel(intercept, slope, rSquared, count);
+    }
+
+    // Predicción de varios montos de inversión sobre un arreglo de salida ya reservado
+    public static void predict(RegressionModel model, double[] adSpend, double[] out) {
+        double intercept = model.intercept();
+        double slope = model.slope();
+        for (int i = 0; i < adSpend.length; i++) {
+            out[i] = intercept + slope * adSpend[i];
+        }
+    }
+}
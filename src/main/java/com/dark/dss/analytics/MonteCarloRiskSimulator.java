@@ -0,0 +1,64 @@
+package com.dark.dss.analytics;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Simulación de Montecarlo del margen unitario (precio - costo) con variaciones aleatorias del ±15%.
+ * El trabajo se divide recursivamente con fork/join: cada mitad recibe su propio generador mediante
+ * SplittableRandom.split(), así los hilos no comparten estado y sus acumuladores se combinan al final.
+ * Como la división es determinista, la misma semilla produce siempre el mismo resultado.
+ * Cada bloque hoja se simula con el RiskKernel indicado (escalar o vectorial).
+ */
+public final class MonteCarloRiskSimulator {
+
+    public static final double MIN_VARIATION = 0.85;
+    public static final double MAX_VARIATION = 1.15;
+
+    // Iteraciones por tarea hoja: suficientemente grande para amortizar el costo de fork/join
+    private static final long LEAF_ITERATIONS = 1L << 16;
+
+    private MonteCarloRiskSimulator() {
+    }
+
+    public static RiskSimulationResult simulate(double basePrice, double baseCost, long iterations,
+                                                SplittableRandom random, RiskKernel kernel) {
+        if (iterations <= 0) {
+            return new RiskAccumulator(basePrice, baseCost).summarize();
+        }
+        return ForkJoinPool.commonPool().invoke(new SimulationTask(basePrice, baseCost, iterations, random, kernel)).summarize();
+    }
+
+    private static final class SimulationTask extends RecursiveTask<RiskAccumulator> {
+        private final double basePrice;
+        private final double baseCost;
+        private final long iterations;
+        private final SplittableRandom random;
+        private final RiskKernel kernel;
+
+        SimulationTask(double basePrice, double baseCost, long iterations, SplittableRandom random, RiskKernel kernel) {
+            this.basePrice = basePrice;
+            this.baseCost = baseCost;
+            this.iterations = iterations;
+            this.random = random;
+            this.kernel = kernel;
+        }
+
+        @Override
+        protected RiskAccumulator compute() {
+            if (iterations <= LEAF_ITERATIONS) {
+                RiskAccumulator accumulator = new RiskAccumulator(basePrice, baseCost);
+                kernel.simulate(basePrice, baseCost, iterations, random, accumulator);
+                return accumulator;
+            }
+
+            long half = iterations / 2;
+            SimulationTask left = new SimulationTask(basePrice, baseCost, half, random.split(), kernel);
+            SimulationTask right = new SimulationTask(basePrice, baseCost, iterations - half, random, kernel);
+            left.fork();
+            RiskAccumulator rightResult = right.compute();
+            return rightResult.merge(left.join());
+        }
+    }
+}
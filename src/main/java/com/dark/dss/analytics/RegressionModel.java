@@ -0,0 +1,13 @@
+package com.dark.dss.analytics;
+
+/**
+ * Modelo lineal simple ya entrenado: SalesUnits = intercept + slope * AdSpend.
+ * Es inmutable, por lo que puede compartirse entre hilos y guardarse en caché.
+ */
+public record RegressionModel(double intercept, double slope, double rSquared, long samples) {
+
+    // Predicción puntual con los coeficientes ya ajustados (O(1), sin BD)
+    public double predict(double adSpend) {
+        return intercept + slope * adSpend;
+    }
+}
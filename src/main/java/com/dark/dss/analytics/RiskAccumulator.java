@@ -0,0 +1,141 @@
+package com.dark.dss.analytics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Acumulador en streaming de la distribución del margen unitario simulado (precio - costo).
+ * Guarda conteos, sumas desplazadas para media/varianza, la pérdida acumulada y un histograma de bins fijos.
+ * Con variaciones del ±15% el margen está acotado a [0.85·precio - 1.15·costo, 1.15·precio - 0.85·costo],
+ * así que el histograma cubre exactamente ese rango: los percentiles tienen un error máximo de un bin
+ * (1/2048 del rango) y la memoria es constante sin importar el número de iteraciones.
+ * Dos acumuladores del mismo producto se combinan con merge() (resultados de hilos paralelos).
+ */
+public final class RiskAccumulator {
+
+    public static final int BINS = 2048;
+    private static final int DISPLAY_BUCKETS = 16;
+
+    private final double lower;
+    private final double binWidth;
+    private final double shift;
+    private final long[] histogram = new long[BINS];
+
+    private long profitable;
+    private long loss;
+    private double sum;        // Σ (margen - shift)
+    private double sumSquares; // Σ (margen - shift)²
+    private double lossSum;    // Σ max(0, -margen)
+
+    public RiskAccumulator(double basePrice, double baseCost) {
+        double min = basePrice * MonteCarloRiskSimulator.MIN_VARIATION - baseCost * MonteCarloRiskSimulator.MAX_VARIATION;
+        double max = basePrice * MonteCarloRiskSimulator.MAX_VARIATION - baseCost * MonteCarloRiskSimulator.MIN_VARIATION;
+        this.lower = min;
+        this.binWidth = max > min ? (max - min) / BINS : 1.0;
+        // Desplazar por el margen base evita la cancelación numérica al calcular la varianza
+        this.shift = basePrice - baseCost;
+    }
+
+    // Registrar un escenario (núcleo escalar)
+    public void add(double margin) {
+        if (margin > 0) {
+            profitable++;
+        } else {
+            loss++;
+            lossSum -= margin;
+        }
+        double centered = margin - shift;
+        sum += centered;
+        sumSquares += centered * centered;
+        histogram[binIndex(margin)]++;
+    }
+
+    // Registrar un bloque ya reducido (núcleo vectorial); los bins se incrementan aparte con addToBin()
+    void addBlock(long blockProfitable, long blockLoss, double blockSum, double blockSumSquares, double blockLossSum) {
+        profitable += blockProfitable;
+        loss += blockLoss;
+        sum += blockSum;
+        sumSquares += blockSumSquares;
+        lossSum += blockLossSum;
+    }
+
+    void addToBin(int bin) {
+        histogram[bin]++;
+    }
+
+    public int binIndex(double margin) {
+        int bin = (int) ((margin - lower) / binWidth);
+        return Math.max(0, Math.min(BINS - 1, bin));
+    }
+
+    double lower() {
+        return lower;
+    }
+
+    double binWidth() {
+        return binWidth;
+    }
+
+    double shift() {
+        return shift;
+    }
+
+    // Combinar el acumulador de otra tarea (mismo producto, mismos límites)
+    public RiskAccumulator merge(RiskAccumulator other) {
+        profitable += other.profitable;
+        loss += other.loss;
+        sum += other.sum;
+        sumSquares += other.sumSquares;
+        lossSum += other.lossSum;
+        for (int i = 0; i < BINS; i++) {
+            histogram[i] += other.histogram[i];
+        }
+        return this;
+    }
+
+    public long total() {
+        return profitable + loss;
+    }
+
+    // Percentil (0-1) por interpolación lineal dentro del bin que lo contiene
+    public double quantile(double q) {
+        long n = total();
+        if (n == 0) return Double.NaN;
+
+        double target = q * n;
+        long cumulative = 0;
+        for (int i = 0; i < BINS; i++) {
+            long next = cumulative + histogram[i];
+            if (next >= target && histogram[i] > 0) {
+                double fraction = (target - cumulative) / histogram[i];
+                return lower + (i + Math.max(0.0, Math.min(1.0, fraction))) * binWidth;
+            }
+            cumulative = next;
+        }
+        return lower + BINS * binWidth;
+    }
+
+    // Resumen inmutable para la respuesta y los reportes
+    public RiskSimulationResult summarize() {
+        long n = total();
+        double mean = n > 0 ? shift + sum / n : Double.NaN;
+        double variance = n > 1 ? Math.max(0.0, (sumSquares - sum * sum / n) / (n - 1)) : 0.0;
+        double expectedLoss = n > 0 ? lossSum / n : 0.0;
+
+        // Histograma reducido para mostrar (DISPLAY_BUCKETS barras)
+        List<RiskSimulationResult.HistogramBucket> buckets = new ArrayList<>();
+        int binsPerBucket = BINS / DISPLAY_BUCKETS;
+        for (int b = 0; b < DISPLAY_BUCKETS; b++) {
+            long count = 0;
+            for (int i = b * binsPerBucket; i < (b + 1) * binsPerBucket; i++) {
+                count += histogram[i];
+            }
+            double from = lower + b * binsPerBucket * binWidth;
+            double to = from + binsPerBucket * binWidth;
+            buckets.add(new RiskSimulationResult.HistogramBucket(from, to, n > 0 ? (double) count / n : 0.0));
+        }
+
+        return new RiskSimulationResult(profitable, loss, mean, variance,
+                quantile(0.05), quantile(0.50), quantile(0.95), expectedLoss, buckets);
+    }
+}
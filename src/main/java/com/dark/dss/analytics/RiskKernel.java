@@ -0,0 +1,15 @@
+package com.dark.dss.analytics;
+
+import java.util.SplittableRandom;
+
+/**
+ * Núcleo secuencial de la simulación de riesgo: simula un bloque de iteraciones y las registra en el acumulador.
+ * MonteCarloRiskSimulator reparte los bloques entre hilos; cada implementación decide cómo recorrer el bloque.
+ */
+public interface RiskKernel {
+
+    void simulate(double basePrice, double baseCost, long iterations, SplittableRandom random, RiskAccumulator accumulator);
+
+    // Nombre expuesto en la respuesta y en los logs ("scalar" o "vector")
+    String name();
+}
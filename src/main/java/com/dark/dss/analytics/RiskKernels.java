@@ -0,0 +1,52 @@
+package com.dark.dss.analytics;
+
+/**
+ * Selección del núcleo de simulación en tiempo de ejecución.
+ * El núcleo vectorial requiere arrancar la JVM con --add-modules jdk.incubator.vector; si el módulo
+ * no está presente (o se configura "scalar"), se usa el núcleo escalar sin fallar.
+ */
+public final class RiskKernels {
+
+    public static final String SCALAR = "scalar";
+    public static final String VECTOR = "vector";
+
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNEL_CLASS = "com.dark.dss.analytics.VectorRiskKernel";
+
+    private RiskKernels() {
+    }
+
+    public static RiskKernel scalar() {
+        return new ScalarRiskKernel();
+    }
+
+    // Devuelve el núcleo pedido o el escalar si el vectorial no está disponible
+    public static RiskKernel select(String preferred) {
+        if (VECTOR.equalsIgnoreCase(preferred)) {
+            RiskKernel vector = vectorOrNull();
+            if (vector != null) {
+                return vector;
+            }
+            // El jar ejecutable no puede declarar módulos en su manifiesto: el flag va en la línea de java
+            System.out.println("ADVERTENCIA: se configuró dss.risk.kernel=" + VECTOR + " pero la Vector API no está "
+                    + "disponible (arranque la JVM con --add-modules " + VECTOR_MODULE + "); se usa el núcleo escalar.");
+        }
+        return scalar();
+    }
+
+    public static boolean isVectorAvailable() {
+        return ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent();
+    }
+
+    // Carga por reflexión para no enlazar la clase vectorial cuando el módulo no existe
+    private static RiskKernel vectorOrNull() {
+        if (!isVectorAvailable()) {
+            return null;
+        }
+        try {
+            return (RiskKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.dark.dss.analytics;
+
+import java.util.List;
+
+/**
+ * Resultado de una simulación de Montecarlo: conteos de escenarios y distribución del margen unitario
+ * (media, varianza, percentiles 5/50/95, pérdida esperada por unidad e histograma reducido).
+ */
+public record RiskSimulationResult(long profitable,
+                                   long loss,
+                                   double meanMargin,
+                                   double marginVariance,
+                                   double marginP5,
+                                   double marginP50,
+                                   double marginP95,
+                                   double expectedLoss,
+                                   List<HistogramBucket> histogram) {
+
+    public long total() {
+        return profitable + loss;
+    }
+
+    // Barra del histograma: rango de margen [from, to) y probabilidad de caer en él
+    public record HistogramBucket(double from, double to, double probability) {
+    }
+}
@@ -0,0 +1,21 @@
+package com.dark.dss.analytics;
+
+import java.util.SplittableRandom;
+
+// Implementación escalar (una iteración a la vez); disponible siempre y usada como respaldo
+final class ScalarRiskKernel implements RiskKernel {
+
+    @Override
+    public void simulate(double basePrice, double baseCost, long iterations, SplittableRandom random, RiskAccumulator accumulator) {
+        for (long i = 0; i < iterations; i++) {
+            double simulatedPrice = basePrice * random.nextDouble(MonteCarloRiskSimulator.MIN_VARIATION, MonteCarloRiskSimulator.MAX_VARIATION);
+            double simulatedCost = baseCost * random.nextDouble(MonteCarloRiskSimulator.MIN_VARIATION, MonteCarloRiskSimulator.MAX_VARIATION);
+            accumulator.add(simulatedPrice - simulatedCost);
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,108 @@
+package com.dark.dss.analytics;
+
+/**
+ * Estadísticos suficientes de la regresión simple AdSpend (x) → SalesUnits (y):
+ * n, Σx, Σy, Σxy, Σx² y Σy².
+ * Con estas seis sumas se obtienen en O(1) los coeficientes OLS, el R² y la correlación de Pearson,
+ * sin volver a leer el historial. También sirve como "delta" (valores negativos al eliminar métricas).
+ */
+public class SufficientStatistics {
+
+    private long count;
+    private double sumX;
+    private double sumY;
+    private double sumXY;
+    private double sumXX;
+    private double sumYY;
+
+    public SufficientStatistics() {
+    }
+
+    public SufficientStatistics(long count, double sumX, double sumY, double sumXY, double sumXX, double sumYY) {
+        this.count = count;
+        this.sumX = sumX;
+        this.sumY = sumY;
+        this.sumXY = sumXY;
+        this.sumXX = sumXX;
+        this.sumYY = sumYY;
+    }
+
+    // Agregar una observación
+    public void add(double x, double y) {
+        count++;
+        sumX += x;
+        sumY += y;
+        sumXY += x * y;
+        sumXX += x * x;
+        sumYY += y * y;
+    }
+
+    // Quitar una observación (métrica eliminada o valores anteriores de una actualización)
+    public void remove(double x, double y) {
+        count--;
+        sumX -= x;
+        sumY -= y;
+        sumXY -= x * y;
+        sumXX -= x * x;
+        sumYY -= y * y;
+    }
+
+    public boolean isEmpty() {
+        return count == 0 && sumX == 0 && sumY == 0 && sumXY == 0 && sumXX == 0 && sumYY == 0;
+    }
+
+    // Sumas centradas: Sxx, Syy, Sxy (se recortan a 0 para absorber errores de redondeo)
+    private double centeredXX() {
+        return Math.max(0.0, sumXX - sumX * sumX / count);
+    }
+
+    private double centeredYY() {
+        return Math.max(0.0, sumYY - sumY * sumY / count);
+    }
+
+    private double centeredXY() {
+        return sumXY - sumX * sumY / count;
+    }
+
+    // Coeficientes OLS en forma cerrada (ver LinearRegressionKernel.fromCenteredSums)
+    public RegressionModel toModel() {
+        if (count < 2) {
+            throw new RuntimeException("No hay variación en la inversión publicitaria; no es posible ajustar el modelo.");
+        }
+        return LinearRegressionKernel.fromCenteredSums(count, sumX / count, sumY / count,
+                centeredXX(), centeredYY(), centeredXY());
+    }
+
+    // Coeficiente de Pearson (r). NaN si alguna de las dos variables no tiene variación.
+    public double correlation() {
+        double denominator = Math.sqrt(centeredXX() * centeredYY());
+        if (denominator == 0.0) {
+            return Double.NaN;
+        }
+        return Math.max(-1.0, Math.min(1.0, centeredXY() / denominator));
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double sumX() {
+        return sumX;
+    }
+
+    public double sumY() {
+        return sumY;
+    }
+
+    public double sumXY() {
+        return sumXY;
+    }
+
+    public double sumXX() {
+        return sumXX;
+    }
+
+    public double sumYY() {
+        return sumYY;
+    }
+}
@@ -0,0 +1,111 @@
+package com.dark.dss.analytics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.SplittableRandom;
+
+/**
+ * Implementación SIMD con la Vector API (jdk.incubator.vector).
+ * Cada carril del vector lleva su propio generador SplitMix64 (sembrado desde el SplittableRandom de la tarea),
+ * genera las variaciones uniformes de precio y costo y calcula el margen; los escenarios rentables se cuentan
+ * con una máscara y las sumas de la distribución se acumulan por carril. Las iteraciones que no llenan un
+ * vector completo se simulan en escalar.
+ * Solo se carga por reflexión desde RiskKernels cuando el módulo está disponible en tiempo de ejecución.
+ */
+final class VectorRiskKernel implements RiskKernel {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLE_SPECIES = SPECIES.withLanes(double.class);
+
+    // Constantes de SplitMix64 (las mismas que usa SplittableRandom)
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final long MIX_1 = 0xbf58476d1ce4e5b9L;
+    private static final long MIX_2 = 0x94d049bb133111ebL;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private final ScalarRiskKernel tailKernel = new ScalarRiskKernel();
+
+    @Override
+    public void simulate(double basePrice, double baseCost, long iterations, SplittableRandom random, RiskAccumulator accumulator) {
+        int lanes = SPECIES.length();
+        long vectorIterations = iterations - iterations % lanes;
+
+        long[] seeds = new long[lanes];
+        for (int i = 0; i < lanes; i++) {
+            seeds[i] = random.nextLong();
+        }
+        LongVector state = LongVector.fromArray(SPECIES, seeds, 0);
+
+        // precio simulado = basePrice * (MIN + (MAX - MIN) * u) = priceOffset + priceScale * u
+        double range = MonteCarloRiskSimulator.MAX_VARIATION - MonteCarloRiskSimulator.MIN_VARIATION;
+        double priceScale = basePrice * range;
+        double priceOffset = basePrice * MonteCarloRiskSimulator.MIN_VARIATION;
+        double costScale = baseCost * range;
+        double costOffset = baseCost * MonteCarloRiskSimulator.MIN_VARIATION;
+
+        double shift = accumulator.shift();
+        double lower = accumulator.lower();
+        double inverseBinWidth = 1.0 / accumulator.binWidth();
+        long[] bins = new long[lanes];
+
+        // Sumas por carril; se reducen a escalares una sola vez al final del bloque
+        DoubleVector sum = DoubleVector.zero(DOUBLE_SPECIES);
+        DoubleVector sumSquares = DoubleVector.zero(DOUBLE_SPECIES);
+        DoubleVector lossSum = DoubleVector.zero(DOUBLE_SPECIES);
+        long profitable = 0;
+
+        for (long i = 0; i < vectorIterations; i += lanes) {
+            state = state.add(GOLDEN_GAMMA);
+            DoubleVector simulatedPrice = toUnitInterval(mix(state)).fma(priceScale, priceOffset);
+            state = state.add(GOLDEN_GAMMA);
+            DoubleVector simulatedCost = toUnitInterval(mix(state)).fma(costScale, costOffset);
+            DoubleVector margin = simulatedPrice.sub(simulatedCost);
+
+            VectorMask<Double> profitableLanes = margin.compare(VectorOperators.GT, 0.0);
+            profitable += profitableLanes.trueCount();
+
+            DoubleVector centered = margin.sub(shift);
+            sum = sum.add(centered);
+            sumSquares = centered.fma(centered, sumSquares);
+            lossSum = lossSum.add(margin.neg().max(0.0));
+
+            // Índice de bin por carril; el incremento del histograma es la única parte escalar
+            ((LongVector) margin.sub(lower).mul(inverseBinWidth).convert(VectorOperators.D2L, 0))
+                    .max(0L).min(RiskAccumulator.BINS - 1)
+                    .intoArray(bins, 0);
+            for (int lane = 0; lane < lanes; lane++) {
+                accumulator.addToBin((int) bins[lane]);
+            }
+        }
+
+        accumulator.addBlock(profitable, vectorIterations - profitable,
+                sum.reduceLanes(VectorOperators.ADD),
+                sumSquares.reduceLanes(VectorOperators.ADD),
+                lossSum.reduceLanes(VectorOperators.ADD));
+
+        if (vectorIterations < iterations) {
+            tailKernel.simulate(basePrice, baseCost, iterations - vectorIterations, random, accumulator);
+        }
+    }
+
+    // Función de mezcla de SplitMix64 aplicada carril por carril
+    private static LongVector mix(LongVector z) {
+        z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 30)).mul(MIX_1);
+        z = z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 27)).mul(MIX_2);
+        return z.lanewise(VectorOperators.XOR, z.lanewise(VectorOperators.LSHR, 31));
+    }
+
+    // 53 bits altos → double uniforme en [0, 1)
+    private static DoubleVector toUnitInterval(LongVector bits) {
+        return ((DoubleVector) bits.lanewise(VectorOperators.LSHR, 11).convert(VectorOperators.L2D, 0)).mul(DOUBLE_UNIT);
+    }
+
+    @Override
+    public String name() {
+        return "vector";
+    }
+}
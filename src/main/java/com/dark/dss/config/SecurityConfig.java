@@ -1,6 +1,7 @@
 package com.dark.dss.config;
 
 import com.dark.dss.security.CustomUserDetailsService;
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -54,6 +55,8 @@ public class SecurityConfig {
                         // Permite que CUALQUIERA (incluso sin login) haga peticiones a "/api/users".
                         // Esto es vital para permitir el registro de nuevos usuarios.
                         .requestMatchers("/api/users").permitAll()
+                        // Las descargas en streaming terminan en un despacho ASYNC de la misma petición, ya autenticada.
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                         // Para CUALQUIER OTRA petición, el usuario debe estar autenticado.
                         .anyRequest().authenticated()
                 )
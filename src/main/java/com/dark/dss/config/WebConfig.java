@@ -0,0 +1,30 @@
+package com.dark.dss.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.orm.jpa.support.OpenEntityManagerInViewInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Open Session in View para la API, excepto los reportes.
+ * Con OSIV, la primera consulta de una petición toma una conexión y la retiene hasta que termina la respuesta.
+ * Los reportes se descargan en streaming y lanzan consultas paralelas (ReportFanOut): con la conexión retenida,
+ * varias descargas simultáneas podrían agotar el pool esperando las conexiones de sus propias consultas.
+ * Los reportes cargan sus relaciones con JOIN FETCH, así que no dependen de la carga perezosa en la vista.
+ * Al declarar el interceptor aquí, Spring Boot no registra el suyo (que aplicaría a todas las rutas).
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    @Bean
+    public OpenEntityManagerInViewInterceptor openEntityManagerInViewInterceptor() {
+        return new OpenEntityManagerInViewInterceptor();
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addWebRequestInterceptor(openEntityManagerInViewInterceptor())
+                .excludePathPatterns("/api/reports/**");
+    }
+}
@@ -1,5 +1,8 @@
 package com.dark.dss.controller;
 
+import com.dark.dss.dto.BatchPredictionRequest;
+import com.dark.dss.service.ForecastService;
+import com.dark.dss.service.PortfolioAnalyticsService;
 import com.dark.dss.service.PredictionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -9,6 +12,7 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -18,9 +22,15 @@ import java.util.Map;
 public class PredictionController {
 
     private final PredictionService predictionService;
+    private final PortfolioAnalyticsService portfolioAnalyticsService;
+    private final ForecastService forecastService;
 
-    public PredictionController(PredictionService predictionService) {
+    public PredictionController(PredictionService predictionService,
+                                PortfolioAnalyticsService portfolioAnalyticsService,
+                                ForecastService forecastService) {
         this.predictionService = predictionService;
+        this.portfolioAnalyticsService = portfolioAnalyticsService;
+        this.forecastService = forecastService;
     }
 
     /**
@@ -29,11 +39,12 @@ public class PredictionController {
      */
     @PostMapping("/sales/{productId}")
     @Operation(summary = "Predecir ventas futuras",
-               description = "Utiliza regresión lineal OLS (Ordinary Least Squares) con la librería Smile para predecir ventas basándose en inversión publicitaria. " +
-                          "Requiere al menos 2 registros históricos del producto. Retorna unidades predichas, precisión del modelo (R²) y otros datos relevantes")
+               description = "Utiliza regresión lineal OLS (Ordinary Least Squares) para predecir ventas basándose en inversión publicitaria. " +
+                          "El modelo se calcula en forma cerrada con las sumas acumuladas del producto y se reutiliza hasta que cambian sus métricas. " +
+                          "Requiere al menos 3 registros históricos del producto. Retorna unidades predichas, precisión del modelo (R²) y otros datos relevantes")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Predicción realizada exitosamente con datos del modelo"),
-            @ApiResponse(responseCode = "400", description = "Datos insuficientes (mínimo 2 registros históricos) o error en el modelo"),
+            @ApiResponse(responseCode = "400", description = "Datos insuficientes (mínimo 3 registros históricos) o error en el modelo"),
             @ApiResponse(responseCode = "404", description = "Producto no encontrado")
     })
     public ResponseEntity<Map<String, Object>> predictSales(
@@ -48,23 +59,130 @@ public class PredictionController {
         }
     }
 
+    /**
+     * Endpoint para Predicción de Ventas por lotes
+     * URL: POST http://localhost:8080/api/predict/sales/batch
+     * Body: [{"productId": 1, "adSpend": [500, 1000, 2000]}, {"productId": 2, "adSpend": [1000]}]
+     */
+    @PostMapping("/sales/batch")
+    @Operation(summary = "Predecir ventas de varios productos en una sola llamada",
+               description = "Recibe una lista de pares (productId, adSpend[]) y devuelve todas las predicciones. " +
+                          "Cada producto se ajusta una sola vez (los modelos faltantes se cargan con una única consulta) " +
+                          "y todas sus inversiones se evalúan contra ese ajuste. Los productos sin datos suficientes " +
+                          "devuelven un campo 'error' sin afectar al resto del lote")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Predicciones calculadas para todos los productos del lote"),
+            @ApiResponse(responseCode = "400", description = "Lote vacío o elementos sin productId")
+    })
+    public ResponseEntity<?> predictSalesBatch(@RequestBody List<BatchPredictionRequest> requests) {
+        try {
+            return ResponseEntity.ok(predictionService.predictSalesBatch(requests));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para Pronósticos Materializados
+     * URL: GET http://localhost:8080/api/predict/forecasts
+     */
+    @GetMapping("/forecasts")
+    @Operation(summary = "Listar pronósticos precalculados",
+               description = "Devuelve el pronóstico estándar ($1,000 en publicidad) de todos los productos, precalculado por un job programado. " +
+                          "Incluye la versión del modelo y la fecha de ajuste")
+    @ApiResponse(responseCode = "200", description = "Pronósticos materializados de todos los productos")
+    public ResponseEntity<List<Map<String, Object>>> getForecasts() {
+        return ResponseEntity.ok(forecastService.findAll());
+    }
+
+    /**
+     * URL: GET http://localhost:8080/api/predict/forecast/{id_producto}
+     */
+    @GetMapping("/forecast/{productId}")
+    @Operation(summary = "Obtener el pronóstico precalculado de un producto",
+               description = "Lee el pronóstico estándar ($1,000 en publicidad) materializado para el producto con un select por clave primaria")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Pronóstico materializado del producto"),
+            @ApiResponse(responseCode = "400", description = "El producto aún no tiene pronóstico materializado")
+    })
+    public ResponseEntity<Map<String, Object>> getForecast(@Parameter(description = "ID del producto") @PathVariable Long productId) {
+        try {
+            return ResponseEntity.ok(forecastService.findByProduct(productId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para Curva de Respuesta a la Inversión
+     * URL: GET http://localhost:8080/api/predict/curve/{id_producto}?from=0&to=50000&step=500
+     */
+    @GetMapping("/curve/{productId}")
+    @Operation(summary = "Curva de respuesta a la inversión publicitaria",
+               description = "Evalúa las unidades previstas para cada inversión entre 'from' y 'to' con paso 'step' usando un único ajuste del modelo, " +
+                          "incluido el extremo 'to'. Devuelve arreglos paralelos (máximo 10,000 puntos) y las unidades marginales por dólar, " +
+                          "que en el modelo lineal son constantes e iguales a la pendiente")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Curva de respuesta calculada"),
+            @ApiResponse(responseCode = "400", description = "Rango inválido, demasiados puntos o datos históricos insuficientes")
+    })
+    public ResponseEntity<Map<String, Object>> responseCurve(
+            @Parameter(description = "ID del producto a analizar") @PathVariable Long productId,
+            @Parameter(description = "Inversión inicial de la curva") @RequestParam(defaultValue = "0") double from,
+            @Parameter(description = "Inversión final de la curva") @RequestParam(defaultValue = "50000") double to,
+            @Parameter(description = "Incremento de inversión entre puntos") @RequestParam(defaultValue = "500") double step) {
+        try {
+            return ResponseEntity.ok(predictionService.responseCurve(productId, from, to, step));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para Regresión en Ventana Deslizante
+     * URL: GET http://localhost:8080/api/predict/rolling/{id_producto}?window={n}
+     */
+    @GetMapping("/rolling/{productId}")
+    @Operation(summary = "Regresión y correlación en ventana deslizante",
+               description = "Recorre el historial del producto ordenado por fecha y devuelve, para cada ventana de N registros consecutivos, " +
+                          "la pendiente, el intercepto, el R² y el coeficiente de Pearson. Permite graficar cómo cambia la eficiencia " +
+                          "de la publicidad en el tiempo. Las sumas de la ventana se actualizan en O(1) por paso")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Serie de métricas por ventana"),
+            @ApiResponse(responseCode = "400", description = "Ventana fuera del rango 3-10000 o historial más corto que la ventana")
+    })
+    public ResponseEntity<Map<String, Object>> rollingRegression(
+            @Parameter(description = "ID del producto a analizar") @PathVariable Long productId,
+            @Parameter(description = "Tamaño de la ventana (número de registros)") @RequestParam(defaultValue = "30") int window) {
+        try {
+            return ResponseEntity.ok(predictionService.rollingRegression(productId, window));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     /**
      * Endpoint para Análisis de Riesgo (Montecarlo)
-     * URL: GET http://localhost:8080/api/predict/risk/{id_producto}
+     * URL: GET http://localhost:8080/api/predict/risk/{id_producto}?iterations={n}&seed={semilla}
      */
     @GetMapping("/risk/{productId}")
     @Operation(summary = "Analizar riesgo financiero",
-               description = "Realiza una simulación de Montecarlo con 10,000 iteraciones para evaluar la probabilidad de éxito/pérdida. " +
-                          "Simula variaciones del ±15% en precio y costos para generar diferentes escenarios financieros")
+               description = "Realiza una simulación de Montecarlo (10,000 iteraciones por defecto, hasta 100 millones) para evaluar la probabilidad de éxito/pérdida. " +
+                          "Simula variaciones del ±15% en precio y costos para generar diferentes escenarios financieros. " +
+                          "Las iteraciones se reparten entre todos los núcleos disponibles. " +
+                          "Con 'seed' la simulación es determinista y las solicitudes repetidas se responden desde la caché")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Análisis de riesgo completado con estadísticas de escenarios"),
             @ApiResponse(responseCode = "400", description = "Error en el análisis o configuración del producto"),
             @ApiResponse(responseCode = "404", description = "Producto no encontrado")
     })
-    public ResponseEntity<Map<String, Object>> analyzeRisk(@Parameter(description = "ID del producto a analizar") @PathVariable Long productId) {
+    public ResponseEntity<Map<String, Object>> analyzeRisk(
+            @Parameter(description = "ID del producto a analizar") @PathVariable Long productId,
+            @Parameter(description = "Número de escenarios a simular") @RequestParam(defaultValue = "10000") long iterations,
+            @Parameter(description = "Semilla opcional: con semilla el resultado es reproducible y se reutiliza desde la caché") @RequestParam(required = false) Long seed) {
 
         try {
-            Map<String, Object> result = predictionService.analyzeRisk(productId);
+            Map<String, Object> result = predictionService.analyzeRisk(productId, iterations, seed);
             return ResponseEntity.ok(result);
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -76,7 +194,7 @@ public class PredictionController {
      */
     @GetMapping("/correlation/{productId}")
     @Operation(summary = "Calcular correlación de Pearson",
-               description = "Calcula el coeficiente de correlación de Pearson entre inversión publicitaria y ventas usando Smile. " +
+               description = "Calcula el coeficiente de correlación de Pearson entre inversión publicitaria y ventas a partir de las sumas acumuladas del producto. " +
                           "Proporciona interpretación automática del impacto: Altamente Eficiente (r≥0.7), Moderado (0.3≤r<0.7), " +
                           "Desperdiciado (-0.3<r<0.3), o Inverso (r≤-0.3). Requiere mínimo 2 registros históricos")
     @ApiResponses(value = {
@@ -92,4 +210,61 @@ public class PredictionController {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    /** Endpoint para Correlación de todo el portafolio
+     * URL: GET http://localhost:8080/api/predict/portfolio/correlation
+     */
+    @GetMapping("/portfolio/correlation")
+    @Operation(summary = "Correlación publicidad/ventas de todos los productos",
+               description = "Calcula el coeficiente de Pearson entre inversión publicitaria y ventas para cada producto " +
+                          "en una sola consulta, a partir de las sumas acumuladas por producto")
+    @ApiResponse(responseCode = "200", description = "Correlaciones de todos los productos con su interpretación")
+    public ResponseEntity<List<Map<String, Object>>> getPortfolioCorrelation() {
+        return ResponseEntity.ok(portfolioAnalyticsService.allProductCorrelations());
+    }
+
+    /** Endpoint para Correlación de los productos de un cliente
+     * URL: GET http://localhost:8080/api/predict/portfolio/correlation/{id_cliente}
+     */
+    @GetMapping("/portfolio/correlation/{clientId}")
+    @Operation(summary = "Matriz de correlación del portafolio de un cliente",
+               description = "En un único recorrido de las métricas del cliente calcula: el Pearson publicidad/ventas de cada producto " +
+                          "y la matriz de correlación de ingresos entre productos (series alineadas por fecha). " +
+                          "Las celdas sin al menos 2 fechas en común se devuelven como null")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Correlaciones por producto y matriz de ingresos"),
+            @ApiResponse(responseCode = "400", description = "El cliente no tiene productos")
+    })
+    public ResponseEntity<Map<String, Object>> getClientPortfolioCorrelation(@Parameter(description = "ID del cliente") @PathVariable Long clientId) {
+        try {
+            return ResponseEntity.ok(portfolioAnalyticsService.clientCorrelations(clientId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Endpoint para Optimización del Presupuesto Publicitario de un cliente
+     * URL: GET http://localhost:8080/api/predict/portfolio/budget/{id_cliente}?budget={monto}
+     */
+    @GetMapping("/portfolio/budget/{clientId}")
+    @Operation(summary = "Optimizar el presupuesto publicitario de un cliente",
+               description = "Reparte el presupuesto entre los productos del cliente para maximizar el ingreso previsto (unidades previstas * precio). " +
+                          "Prioriza los productos con mayor ingreso marginal por dólar y limita cada uno a su inversión máxima histórica. " +
+                          "Los productos con intercepto negativo no venden hasta su cruce por cero (zero_units_ad_spend): se evalúan las " +
+                          "combinaciones de esos productos que conviene financiar, así que el reparto es óptimo (exact = true) salvo que " +
+                          "haya más de 16 productos con cruce alcanzable. El presupuesto que no mejora el ingreso se reporta como no asignado")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Asignación por producto e ingreso previsto total"),
+            @ApiResponse(responseCode = "400", description = "Presupuesto inválido o el cliente no tiene productos")
+    })
+    public ResponseEntity<Map<String, Object>> optimizeBudget(
+            @Parameter(description = "ID del cliente") @PathVariable Long clientId,
+            @Parameter(description = "Presupuesto publicitario total a repartir") @RequestParam double budget) {
+        try {
+            return ResponseEntity.ok(portfolioAnalyticsService.optimizeBudget(clientId, budget));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -1,15 +1,26 @@
 package com.dark.dss.controller;
 
+import com.dark.dss.service.MetricExportService;
+import com.dark.dss.service.ReportCacheService;
 import com.dark.dss.service.ReportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/reports")
@@ -18,9 +29,14 @@ import org.springframework.web.bind.annotation.*;
 public class ReportController {
 
     private final ReportService reportService;
+    private final MetricExportService metricExportService;
+    private final ReportCacheService reportCacheService;
 
-    public ReportController(ReportService reportService) {
+    public ReportController(ReportService reportService, MetricExportService metricExportService,
+                            ReportCacheService reportCacheService) {
         this.reportService = reportService;
+        this.metricExportService = metricExportService;
+        this.reportCacheService = reportCacheService;
     }
 
     // Descargar PDF con Predicciones de Ventas
@@ -28,22 +44,18 @@ public class ReportController {
     @Operation(summary = "Descargar reporte de predicciones en PDF",
                description = "Genera un reporte PDF completo con predicciones de ventas para todos los productos. " +
                           "Simula una inversión estándar de $1,000 en publicidad y muestra: producto, precio actual, " +
-                          "unidades predichas y precisión del modelo (R²)")
+                          "unidades predichas y precisión del modelo (R²). Responde con ETag según la versión de los datos; " +
+                          "con If-None-Match vigente devuelve 304 y, si no hubo cambios, se sirve desde caché")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "PDF generado exitosamente con predicciones de todos los productos"),
+            @ApiResponse(responseCode = "304", description = "Los datos no cambiaron desde la versión indicada en If-None-Match"),
             @ApiResponse(responseCode = "500", description = "Error interno al generar el PDF")
     })
-    public ResponseEntity<byte[]> downloadPdf() {
-        try {
-            byte[] pdfBytes = reportService.generatePredictionPdf();
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=predicciones_global_line.pdf")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(pdfBytes);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
-        }
+    public ResponseEntity<StreamingResponseBody> downloadPdf(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
+        // OPTIMIZACIÓN: El PDF se escribe directamente en la respuesta mientras se genera
+        return cachedReport(ReportCacheService.CachedReport.PREDICTION_PDF, ifNoneMatch,
+                "predicciones_global_line.pdf", MediaType.APPLICATION_PDF, reportService::writePredictionPdf);
     }
 
     // Descargar Excel con Histórico de Métricas
@@ -51,22 +63,117 @@ public class ReportController {
     @Operation(summary = "Descargar histórico completo de métricas en Excel",
                description = "Genera un archivo Excel (.xlsx) con el histórico completo de todas las métricas. " +
                           "Incluye: ID métrica, fecha, ASIN del producto, nombre del producto, inversión publicitaria, " +
-                          "unidades vendidas e ingresos. Formateado con encabezados en negrita y columnas autoajustadas")
+                          "unidades vendidas e ingresos. Formateado con encabezados en negrita y anchos de columna fijos. " +
+                          "Se genera en streaming con memoria constante; a partir de 1,048,575 filas continúa en hojas adicionales. " +
+                          "Responde con ETag según la versión de los datos; con If-None-Match vigente devuelve 304")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Excel generado exitosamente con formato profesional"),
+            @ApiResponse(responseCode = "304", description = "Los datos no cambiaron desde la versión indicada en If-None-Match"),
             @ApiResponse(responseCode = "500", description = "Error interno al generar el Excel")
     })
-    public ResponseEntity<byte[]> downloadExcel() {
+    public ResponseEntity<StreamingResponseBody> downloadExcel(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) throws IOException {
+        return cachedReport(ReportCacheService.CachedReport.METRICS_EXCEL, ifNoneMatch,
+                "historico_metricas.xlsx", MediaType.APPLICATION_OCTET_STREAM, // Tipo genérico binario para Excel
+                reportService::writeMetricsExcel);
+    }
+
+    // OPTIMIZACIÓN: Si los datos no cambiaron, 304 con If-None-Match vigente o lectura del archivo en caché;
+    // solo una versión nueva se genera (y se guarda mientras se envía)
+    private ResponseEntity<StreamingResponseBody> cachedReport(ReportCacheService.CachedReport report, String ifNoneMatch,
+                                                               String fileName, MediaType contentType,
+                                                               ReportCacheService.ReportWriter writer) throws IOException {
+        String etag = reportCacheService.currentETag(report);
+        if (ReportCacheService.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        InputStream cached = reportCacheService.openCached(report, etag);
+        StreamingResponseBody body;
+        if (cached != null) {
+            body = out -> {
+                try (cached) {
+                    cached.transferTo(out);
+                }
+            };
+        } else {
+            body = out -> {
+                try {
+                    reportCacheService.renderAndStore(report, etag, out, writer);
+                } catch (IOException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new IOException("Error al generar el reporte " + fileName, e);
+                }
+            };
+        }
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .contentType(contentType)
+                .body(body);
+    }
+
+    // Exportar métricas en CSV (opcionalmente gzip)
+    @GetMapping("/metrics-csv")
+    @Operation(summary = "Exportar métricas en CSV",
+               description = "Exporta el histórico de métricas unido al ASIN y nombre del producto en CSV (UTF-8), en streaming desde la base de datos. " +
+                          "Admite un rango de fechas inclusivo (from/to, formato AAAA-MM-DD) y compresión gzip con gzip=true")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "CSV generado en streaming"),
+            @ApiResponse(responseCode = "400", description = "Rango de fechas inválido")
+    })
+    public ResponseEntity<?> exportMetricsCsv(
+            @Parameter(description = "Fecha inicial (inclusive)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Fecha final (inclusive)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @Parameter(description = "Comprimir con gzip") @RequestParam(defaultValue = "false") boolean gzip) {
+        LocalDate start = from != null ? from : MetricExportService.MIN_DATE;
+        LocalDate end = to != null ? to : MetricExportService.MAX_DATE;
         try {
-            byte[] excelBytes = reportService.generateMetricsExcel();
+            MetricExportService.validateRange(start, end);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
 
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=historico_metricas.xlsx")
-                    .contentType(MediaType.APPLICATION_OCTET_STREAM) // Tipo genérico binario para Excel
-                    .body(excelBytes);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError().build();
+        StreamingResponseBody body = out -> metricExportService.writeCsv(start, end, gzip, out);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=metricas.csv" + (gzip ? ".gz" : ""))
+                .contentType(gzip ? MediaType.parseMediaType("application/gzip") : new MediaType("text", "csv", java.nio.charset.StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    // Exportar métricas en formato columnar Arrow IPC
+    @GetMapping("/metrics-arrow")
+    @Operation(summary = "Exportar métricas en Apache Arrow (IPC stream)",
+               description = "Exporta el histórico de métricas unido al ASIN y nombre del producto en formato columnar Arrow IPC (stream), " +
+                          "legible directamente con pyarrow, pandas o polars. Admite un rango de fechas inclusivo (from/to, formato AAAA-MM-DD)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Archivo Arrow generado en streaming"),
+            @ApiResponse(responseCode = "400", description = "Rango de fechas inválido")
+    })
+    public ResponseEntity<?> exportMetricsArrow(
+            @Parameter(description = "Fecha inicial (inclusive)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @Parameter(description = "Fecha final (inclusive)") @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate start = from != null ? from : MetricExportService.MIN_DATE;
+        LocalDate end = to != null ? to : MetricExportService.MAX_DATE;
+        try {
+            MetricExportService.validateRange(start, end);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
+
+        StreamingResponseBody body = out -> metricExportService.writeArrow(start, end, out);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=metricas.arrows")
+                .contentType(MediaType.parseMediaType("application/vnd.apache.arrow.stream"))
+                .body(body);
     }
 
     // Descargar PDF con Análisis de Riesgo (Montecarlo) para un producto
@@ -80,16 +187,61 @@ public class ReportController {
             @ApiResponse(responseCode = "404", description = "Producto no encontrado"),
             @ApiResponse(responseCode = "500", description = "Error interno al generar el PDF")
     })
-    public ResponseEntity<byte[]> downloadRiskReport(@Parameter(description = "ID del producto para el análisis de riesgo") @PathVariable Long productId) {
+    public ResponseEntity<StreamingResponseBody> downloadRiskReport(@Parameter(description = "ID del producto para el análisis de riesgo") @PathVariable Long productId) {
+        // La simulación se resuelve antes de abrir la respuesta para poder devolver un código de error
+        ReportService.RiskReport report;
         try {
-            byte[] pdfBytes = reportService.generateRiskPdf(productId);
-
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=reporte_riesgo_" + productId + ".pdf")
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(pdfBytes);
+            report = reportService.prepareRiskReport(productId);
         } catch (Exception e) {
             return ResponseEntity.internalServerError().build();
         }
+
+        StreamingResponseBody body = out -> {
+            try {
+                reportService.writeRiskPdf(report, out);
+            } catch (Exception e) {
+                throw new IOException("Error al generar el PDF de riesgo", e);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=reporte_riesgo_" + productId + ".pdf")
+                .contentType(MediaType.APPLICATION_PDF)
+                .body(body);
+    }
+
+    // Descargar PDF de Análisis de Riesgo por lotes (un cliente o todo el catálogo)
+    @GetMapping("/risk-batch-pdf")
+    @Operation(summary = "Descargar reporte de riesgo por lotes en PDF",
+               description = "Ejecuta en paralelo la simulación de Montecarlo de todos los productos de un cliente " +
+                          "(o de todo el catálogo si no se indica clientId) y genera un solo PDF con un ranking de riesgo: " +
+                          "probabilidad de éxito, margen P5, pérdida esperada y conclusión por producto, del más riesgoso al más seguro")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "PDF con el ranking de riesgo generado en streaming"),
+            @ApiResponse(responseCode = "400", description = "Cliente no encontrado o sin productos")
+    })
+    public ResponseEntity<?> downloadBatchRiskReport(
+            @Parameter(description = "ID del cliente (opcional; sin él se analiza todo el catálogo)") @RequestParam(required = false) Long clientId) {
+        // Las simulaciones se resuelven antes de abrir la respuesta para poder devolver un código de error
+        ReportService.BatchRiskReport report;
+        try {
+            report = reportService.prepareBatchRiskReport(clientId);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                reportService.writeBatchRiskPdf(report, out);
+            } catch (Exception e) {
+                throw new IOException("Error al generar el PDF de riesgo por lotes", e);
+            }
+        };
+
+        String fileName = clientId != null ? "reporte_riesgo_cliente_" + clientId + ".pdf" : "reporte_riesgo_catalogo.pdf";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + fileName)
+                .contentType(MediaType.APPLICATION_PDF)
+                .body(body);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,100 @@
+package com.dark.dss.controller;
+
+import com.dark.dss.service.ReportJobService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/reports/jobs")
+@CrossOrigin(origins = "*")
+@Tag(name = "Trabajos de Reportes", description = "API para generar reportes en segundo plano, consultar su estado y descargarlos")
+public class ReportJobController {
+
+    private final ReportJobService reportJobService;
+
+    public ReportJobController(ReportJobService reportJobService) {
+        this.reportJobService = reportJobService;
+    }
+
+    /**
+     * Encolar un reporte
+     * URL: POST http://localhost:8080/api/reports/jobs?type=prediction-pdf|metrics-excel|risk-pdf&productId={id}
+     */
+    @PostMapping
+    @Operation(summary = "Encolar la generación de un reporte",
+               description = "Devuelve de inmediato un ID de trabajo; el reporte se genera en segundo plano y se guarda en disco. " +
+                          "Si ya hay un trabajo idéntico pendiente o en curso, se devuelve ese mismo trabajo. " +
+                          "Tipos: prediction-pdf, metrics-excel, risk-pdf (requiere productId)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Trabajo aceptado (nuevo o existente)"),
+            @ApiResponse(responseCode = "400", description = "Tipo inválido, falta productId o la cola está llena")
+    })
+    public ResponseEntity<Map<String, Object>> submit(
+            @Parameter(description = "Tipo de reporte") @RequestParam String type,
+            @Parameter(description = "ID del producto (solo risk-pdf)") @RequestParam(required = false) Long productId) {
+        try {
+            ReportJobService.ReportJob job = reportJobService.submit(ReportJobService.ReportType.fromCode(type), productId);
+            return ResponseEntity.accepted().body(reportJobService.toResponse(job));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Consultar el estado de un trabajo
+     * URL: GET http://localhost:8080/api/reports/jobs/{id_trabajo}
+     */
+    @GetMapping("/{jobId}")
+    @Operation(summary = "Consultar el estado de un trabajo de reporte",
+               description = "Estados: PENDING, RUNNING, COMPLETED (incluye file_url) o FAILED (incluye error)")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Estado del trabajo"),
+            @ApiResponse(responseCode = "404", description = "Trabajo no encontrado o expirado")
+    })
+    public ResponseEntity<Map<String, Object>> status(@Parameter(description = "ID del trabajo") @PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(reportJobService.toResponse(reportJobService.find(jobId)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Descargar el archivo de un trabajo terminado
+     * URL: GET http://localhost:8080/api/reports/jobs/{id_trabajo}/file
+     */
+    @GetMapping("/{jobId}/file")
+    @Operation(summary = "Descargar el reporte generado",
+               description = "Sirve el archivo guardado en disco del trabajo terminado")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Archivo del reporte"),
+            @ApiResponse(responseCode = "404", description = "Trabajo no encontrado o expirado"),
+            @ApiResponse(responseCode = "409", description = "El trabajo aún no termina o falló")
+    })
+    public ResponseEntity<?> download(@Parameter(description = "ID del trabajo") @PathVariable String jobId) {
+        ReportJobService.ReportJob job;
+        try {
+            job = reportJobService.find(jobId);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        }
+        if (job.status() != ReportJobService.JobStatus.COMPLETED) {
+            return ResponseEntity.status(409).body(reportJobService.toResponse(job));
+        }
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + job.fileName())
+                .contentType(MediaType.parseMediaType(job.type().contentType()))
+                .body(new FileSystemResource(job.file()));
+    }
+}
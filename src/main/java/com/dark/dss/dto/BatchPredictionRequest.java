@@ -0,0 +1,7 @@
+package com.dark.dss.dto;
+
+import java.util.List;
+
+// Elemento de una predicción por lotes: un producto y las inversiones publicitarias a evaluar
+public record BatchPredictionRequest(Long productId, List<Double> adSpend) {
+}
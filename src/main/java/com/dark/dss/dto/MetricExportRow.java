@@ -0,0 +1,8 @@
+package com.dark.dss.dto;
+
+import java.time.LocalDate;
+
+// Fila del histórico de métricas para exportación (proyección JPQL: sin entidades administradas ni carga perezosa)
+public record MetricExportRow(Long id, String productName, String asin, LocalDate date,
+                              Integer salesUnits, Double adSpend, Double revenue) {
+}
@@ -5,6 +5,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Entity
 @Table(name = "clients")
 @Data
@@ -23,4 +25,14 @@ public class Client {
 
     @Column(nullable = false)
     private String phone;
+
+    // Última modificación: forma parte de la versión de datos de los reportes (ETag)
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now();
+    }
 }
@@ -12,8 +12,11 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 public class Metric {
+    // Secuencia con asignación por bloques (pooled): Hibernate reserva 50 IDs por consulta a la secuencia y puede
+    // agrupar los INSERT en lotes JDBC (con IDENTITY cada fila necesitaba su propio viaje a la base de datos)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "metrics_seq")
+    @SequenceGenerator(name = "metrics_seq", sequenceName = "metrics_seq", allocationSize = 50)
     private Long id;
     @Column(nullable = false)
     private LocalDate date;
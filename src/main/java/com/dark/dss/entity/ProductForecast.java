@@ -0,0 +1,38 @@
+package com.dark.dss.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Pronóstico precalculado por producto para la inversión estándar (lo materializa ForecastService)
+@Entity
+@Table(name = "product_forecasts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductForecast {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "ad_spend", nullable = false)
+    private Double adSpend; // Inversión simulada
+
+    @Column(name = "predicted_units")
+    private Integer predictedUnits; // null si el producto no tiene datos suficientes
+
+    @Column(name = "model_accuracy")
+    private Double modelAccuracy; // R²
+
+    @Column(name = "correlation", nullable = false)
+    private Double correlation; // Pearson r (NaN sin variación)
+
+    @Column(name = "model_version", nullable = false)
+    private Long modelVersion; // Versión de product_statistics usada para el ajuste
+
+    @Column(name = "fitted_at", nullable = false)
+    private LocalDateTime fittedAt;
+}
@@ -0,0 +1,40 @@
+package com.dark.dss.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Sumas acumuladas por producto para la regresión AdSpend → SalesUnits (se mantienen al escribir métricas)
+@Entity
+@Table(name = "product_statistics")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStatistics {
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "sample_count", nullable = false)
+    private Long sampleCount; // n
+
+    @Column(name = "sum_x", nullable = false)
+    private Double sumX; // Σ AdSpend
+
+    @Column(name = "sum_y", nullable = false)
+    private Double sumY; // Σ SalesUnits
+
+    @Column(name = "sum_xy", nullable = false)
+    private Double sumXy;
+
+    @Column(name = "sum_xx", nullable = false)
+    private Double sumXx;
+
+    @Column(name = "sum_yy", nullable = false)
+    private Double sumYy;
+
+    // Se incrementa con cada cambio de las sumas; permite saber qué pronósticos están desactualizados
+    @Column(name = "version")
+    private Long version;
+}
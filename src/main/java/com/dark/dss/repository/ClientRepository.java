@@ -2,6 +2,13 @@ package com.dark.dss.repository;
 
 import com.dark.dss.entity.Client;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
 
 public interface ClientRepository extends JpaRepository<Client, Long> {
+
+    // Versión de la tabla para reportes en caché: [cantidad, id máximo, última modificación]
+    @Query("SELECT COUNT(c), MAX(c.id), MAX(c.updatedAt) FROM Client c")
+    List<Object[]> findDataVersion();
 }
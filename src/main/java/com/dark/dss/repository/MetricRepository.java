@@ -1,10 +1,16 @@
 package com.dark.dss.repository;
 
+import com.dark.dss.dto.MetricExportRow;
 import com.dark.dss.entity.Metric;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface MetricRepository extends JpaRepository<Metric, Long> {
     // Buscar historial ordenado por fecha (importante para la predicción)
@@ -18,6 +24,31 @@ public interface MetricRepository extends JpaRepository<Metric, Long> {
     @Query("SELECT m FROM Metric m JOIN FETCH m.product p LEFT JOIN FETCH p.client")
     List<Metric> findAllWithProduct();
 
+    // OPTIMIZACIÓN: Recorrido en streaming (cursor) de las series de un cliente, sin materializar entidades
+    // Devuelve: [productId, fecha, adSpend, salesUnits, revenue] ordenado por fecha. Requiere transacción abierta.
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT p.id, m.date, m.adSpend, m.salesUnits, m.revenue FROM Metric m JOIN m.product p WHERE p.client.id = :clientId ORDER BY m.date ASC")
+    Stream<Object[]> streamSeriesByClientId(@Param("clientId") Long clientId);
+
+    // OPTIMIZACIÓN: Serie [fecha, adSpend, salesUnits] de un producto en streaming (ventanas deslizantes)
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("SELECT m.date, m.adSpend, m.salesUnits FROM Metric m WHERE m.product.id = :productId ORDER BY m.date ASC, m.id ASC")
+    Stream<Object[]> streamSeriesByProductId(@Param("productId") Long productId);
+
+    // OPTIMIZACIÓN: Histórico para exportar (rango de fechas inclusivo), en streaming (cursor) y con el producto ya unido
+    // Proyección a DTO: el contexto de persistencia no retiene filas, la memoria no crece con el número de métricas
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "1000"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    @Query("SELECT new com.dark.dss.dto.MetricExportRow(m.id, p.name, p.asin, m.date, m.salesUnits, m.adSpend, m.revenue) " +
+           "FROM Metric m JOIN m.product p WHERE m.date BETWEEN :from AND :to ORDER BY m.id ASC")
+    Stream<MetricExportRow> streamExportRows(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Inversión publicitaria máxima observada por producto de un cliente: [productId, maxAdSpend]
+    @Query("SELECT m.product.id, MAX(m.adSpend) FROM Metric m WHERE m.product.client.id = :clientId GROUP BY m.product.id")
+    List<Object[]> findMaxAdSpendByClientId(@Param("clientId") Long clientId);
+
     //ADMIN
     //KPI Global: Dinero total histórico
     @Query("SELECT SUM(m.revenue) FROM Metric m")
@@ -35,4 +66,20 @@ public interface MetricRepository extends JpaRepository<Metric, Long> {
     //Gráfica Barras: Top 5 Global
     @Query("SELECT p.name, SUM(m.revenue) as total FROM Metric m JOIN m.product p GROUP BY p.name ORDER BY total DESC LIMIT 5")
     List<Object[]> findTop5Products();
-}
\ No newline at end of file
+
+    // Alinear la secuencia de IDs con los datos existentes (tablas creadas cuando la columna usaba IDENTITY).
+    // Con el optimizador pooled, nextval devuelve el extremo superior del bloque de 50: basta con que la secuencia
+    // alcance MAX(id). Solo avanza con nextval (nunca setval), así que otra instancia que ya reservó un bloque no
+    // puede recibir IDs repetidos aunque varias arranquen a la vez; si la secuencia ya va por delante no hace nada.
+    // El bloque extra cubre una secuencia recién creada, cuyo primer nextval devuelve el valor inicial.
+    // Devuelve el último valor de la secuencia.
+    @Transactional
+    @Query(value = """
+            SELECT COALESCE(MAX(s.next_value), (SELECT last_value FROM metrics_seq))
+            FROM (SELECT nextval('metrics_seq') AS next_value
+                  FROM generate_series(1, (SELECT CASE WHEN g.gap > 0 THEN CAST(CEIL(g.gap / 50.0) AS integer) + 1 ELSE 0 END
+                                           FROM (SELECT COALESCE(MAX(m.id), 0) - (SELECT last_value FROM metrics_seq) AS gap
+                                                 FROM metrics m) g))) s
+            """, nativeQuery = true)
+    long alignIdSequence();
+}
@@ -0,0 +1,29 @@
+package com.dark.dss.repository;
+
+import com.dark.dss.entity.ProductForecast;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductForecastRepository extends JpaRepository<ProductForecast, Long> {
+
+    // Eliminar pronósticos de productos que ya no tienen métricas
+    @Modifying
+    @Query("DELETE FROM ProductForecast f WHERE NOT EXISTS (SELECT s FROM ProductStatistics s WHERE s.productId = f.productId)")
+    int deleteOrphans();
+
+    // Pronósticos vigentes: ajustados con la versión actual de las sumas del producto
+    @Query("SELECT f FROM ProductForecast f, ProductStatistics s WHERE s.productId = f.productId " +
+           "AND f.modelVersion = s.version")
+    List<ProductForecast> findAllCurrent();
+
+    // Pronósticos vigentes de los productos de varios clientes (fragmentos del reporte por cliente)
+    @Query("SELECT f FROM ProductForecast f, ProductStatistics s WHERE s.productId = f.productId " +
+           "AND f.modelVersion = s.version " +
+           "AND f.productId IN (SELECT p.id FROM Product p WHERE p.client.id IN :clientIds)")
+    List<ProductForecast> findCurrentByClientIds(@Param("clientIds") Collection<Long> clientIds);
+}
@@ -2,7 +2,10 @@ package com.dark.dss.repository;
 
 import com.dark.dss.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,6 +13,18 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     //Buscar productos que pertenecen al Cliente con el ID
     List<Product> findByClientId(Long clientId);
 
+    // OPTIMIZACIÓN: Todos los productos con su cliente en una sola consulta (reportes, evita N+1 sobre p.client)
+    @Query("SELECT p FROM Product p LEFT JOIN FETCH p.client ORDER BY p.id ASC")
+    List<Product> findAllWithClient();
+
+    // Productos de varios clientes con su cliente cargado (fragmentos del reporte por cliente)
+    @Query("SELECT p FROM Product p JOIN FETCH p.client c WHERE c.id IN :clientIds ORDER BY p.id ASC")
+    List<Product> findByClientIdsWithClient(@Param("clientIds") Collection<Long> clientIds);
+
+    // Versión de la tabla para reportes en caché: [cantidad, id máximo, última modificación]
+    @Query("SELECT COUNT(p), MAX(p.id), MAX(p.updatedAt) FROM Product p")
+    List<Object[]> findDataVersion();
+
     // NUEVO: Buscar por código ASIN (Para evitar duplicados)
     Optional<Product> findByAsin(String asin);
 }
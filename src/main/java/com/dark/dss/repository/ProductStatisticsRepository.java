@@ -0,0 +1,78 @@
+package com.dark.dss.repository;
+
+import com.dark.dss.entity.ProductStatistics;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ProductStatisticsRepository extends JpaRepository<ProductStatistics, Long> {
+
+    // Suma atómica de un delta (UPSERT de PostgreSQL): segura frente a escrituras concurrentes del mismo producto
+    @Modifying
+    @Query(value = """
+            INSERT INTO product_statistics (product_id, sample_count, sum_x, sum_y, sum_xy, sum_xx, sum_yy, version)
+            VALUES (:productId, :n, :sumX, :sumY, :sumXy, :sumXx, :sumYy, 1)
+            ON CONFLICT (product_id) DO UPDATE SET
+                sample_count = product_statistics.sample_count + EXCLUDED.sample_count,
+                sum_x = product_statistics.sum_x + EXCLUDED.sum_x,
+                sum_y = product_statistics.sum_y + EXCLUDED.sum_y,
+                sum_xy = product_statistics.sum_xy + EXCLUDED.sum_xy,
+                sum_xx = product_statistics.sum_xx + EXCLUDED.sum_xx,
+                sum_yy = product_statistics.sum_yy + EXCLUDED.sum_yy,
+                version = COALESCE(product_statistics.version, 0) + 1
+            """, nativeQuery = true)
+    void applyDelta(@Param("productId") Long productId,
+                    @Param("n") long n,
+                    @Param("sumX") double sumX,
+                    @Param("sumY") double sumY,
+                    @Param("sumXy") double sumXy,
+                    @Param("sumXx") double sumXx,
+                    @Param("sumYy") double sumYy);
+
+    // Recalcular las sumas de todos los productos desde la tabla de métricas (una sola consulta agregada).
+    // Solo se reescriben (y cambian de versión) las filas cuyas sumas difieren.
+    @Modifying
+    @Query(value = """
+            INSERT INTO product_statistics (product_id, sample_count, sum_x, sum_y, sum_xy, sum_xx, sum_yy, version)
+            SELECT m.product_id, COUNT(*), SUM(m.ad_spend), SUM(m.sales_units),
+                   SUM(m.ad_spend * m.sales_units), SUM(m.ad_spend * m.ad_spend),
+                   SUM(CAST(m.sales_units AS double precision) * m.sales_units), 1
+            FROM metrics m
+            GROUP BY m.product_id
+            ON CONFLICT (product_id) DO UPDATE SET
+                sample_count = EXCLUDED.sample_count,
+                sum_x = EXCLUDED.sum_x,
+                sum_y = EXCLUDED.sum_y,
+                sum_xy = EXCLUDED.sum_xy,
+                sum_xx = EXCLUDED.sum_xx,
+                sum_yy = EXCLUDED.sum_yy,
+                version = COALESCE(product_statistics.version, 0) + 1
+            WHERE product_statistics.sample_count IS DISTINCT FROM EXCLUDED.sample_count
+               OR product_statistics.sum_x IS DISTINCT FROM EXCLUDED.sum_x
+               OR product_statistics.sum_y IS DISTINCT FROM EXCLUDED.sum_y
+               OR product_statistics.sum_xy IS DISTINCT FROM EXCLUDED.sum_xy
+               OR product_statistics.sum_xx IS DISTINCT FROM EXCLUDED.sum_xx
+               OR product_statistics.sum_yy IS DISTINCT FROM EXCLUDED.sum_yy
+               OR product_statistics.version IS NULL
+            """, nativeQuery = true)
+    int rebuildAll();
+
+    // Limpiar filas de productos que ya no tienen métricas
+    @Modifying
+    @Query(value = "DELETE FROM product_statistics s WHERE NOT EXISTS (SELECT 1 FROM metrics m WHERE m.product_id = s.product_id)",
+           nativeQuery = true)
+    int deleteOrphans();
+
+    // Productos cuyas sumas cambiaron desde el último pronóstico materializado (o que aún no tienen pronóstico)
+    @Query("SELECT s FROM ProductStatistics s WHERE NOT EXISTS " +
+           "(SELECT f FROM ProductForecast f WHERE f.productId = s.productId AND f.modelVersion = s.version)")
+    List<ProductStatistics> findWithStaleForecast();
+
+    // Versión de las métricas para reportes en caché: [suma de versiones, productos con sumas].
+    // Cada alta, cambio o baja de métricas incrementa la versión de su producto.
+    @Query("SELECT COALESCE(SUM(s.version), 0), COUNT(s) FROM ProductStatistics s")
+    List<Object[]> findDataVersion();
+}
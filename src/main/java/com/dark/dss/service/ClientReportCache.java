@@ -0,0 +1,96 @@
+package com.dark.dss.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fragmentos precalculados del reporte de predicciones por cliente (predicciones de sus productos y totales).
+ * Un cliente queda marcado como sucio cuando cambian sus productos o las métricas de alguno de ellos
+ * (MetricService, ProductService y ClientService lo marcan); el reporte solo recalcula los clientes sucios
+ * y arma el resto con los fragmentos guardados.
+ * Cada marca incrementa la generación del cliente: un fragmento calculado con datos leídos antes de la marca
+ * se descarta en lugar de guardarse. Si el producto marcado no está en ningún fragmento guardado, no se sabe
+ * a qué cliente pertenece y se descartan todos los fragmentos en cálculo en ese momento.
+ */
+@Component
+public class ClientReportCache {
+
+    private final Map<Long, ReportService.ClientSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, Long> generations = new ConcurrentHashMap<>();
+    // Cliente de cada producto con fragmento guardado (las métricas llegan con el ID de producto)
+    private final Map<Long, Long> clientByProduct = new ConcurrentHashMap<>();
+    // Marcas de productos sin fragmento guardado (afectan a cualquier fragmento en cálculo)
+    private final AtomicLong unresolvedMarks = new AtomicLong();
+
+    // Fragmento limpio del cliente, o null si está sucio o aún no se calcula
+    public ReportService.ClientSnapshot get(Long clientId) {
+        return snapshots.get(clientId);
+    }
+
+    // Generación actual del cliente: se lee antes de consultar los datos del fragmento
+    public long generation(Long clientId) {
+        return generations.getOrDefault(clientId, 0L) + unresolvedMarks.get();
+    }
+
+    // Guardar el fragmento solo si el cliente no se marcó como sucio desde que se leyó `generation`
+    public void put(Long clientId, long generation, ReportService.ClientSnapshot snapshot) {
+        if (generation(clientId) != generation) return;
+
+        snapshot.predictions().forEach(prediction -> clientByProduct.put(prediction.product().getId(), clientId));
+        snapshots.put(clientId, snapshot);
+        // Una marca concurrente entre la comprobación y el put no debe quedar oculta
+        if (generation(clientId) != generation) {
+            snapshots.remove(clientId);
+        }
+    }
+
+    public void markClientDirty(Long clientId) {
+        if (clientId == null) return;
+        markDirty(() -> invalidate(clientId));
+    }
+
+    // Métricas o datos de un producto cambiaron: se marca el cliente que lo tiene en su fragmento
+    public void markProductDirty(Long productId) {
+        if (productId == null) return;
+        markDirty(() -> {
+            Long clientId = clientByProduct.get(productId);
+            if (clientId != null) {
+                invalidate(clientId);
+            } else {
+                unresolvedMarks.incrementAndGet();
+            }
+        });
+    }
+
+    public void markProductsDirty(Collection<Long> productIds) {
+        productIds.forEach(this::markProductDirty);
+    }
+
+    private void markDirty(Runnable mark) {
+        mark.run();
+        // Dentro de una transacción se marca otra vez al confirmar, por si un reporte concurrente
+        // leyó los datos anteriores al commit después de la primera marca
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    mark.run();
+                }
+            });
+        }
+    }
+
+    private void invalidate(Long clientId) {
+        generations.merge(clientId, 1L, Long::sum);
+        ReportService.ClientSnapshot removed = snapshots.remove(clientId);
+        if (removed != null) {
+            removed.predictions().forEach(prediction -> clientByProduct.remove(prediction.product().getId(), clientId));
+        }
+    }
+}
@@ -10,9 +10,11 @@ import java.util.List;
 public class ClientService {
 
     private final ClientRepository clientRepository;
+    private final ClientReportCache clientReportCache;
 
-    public ClientService(ClientRepository clientRepository) {
+    public ClientService(ClientRepository clientRepository, ClientReportCache clientReportCache) {
         this.clientRepository = clientRepository;
+        this.clientReportCache = clientReportCache;
     }
 
     // Listar todos
@@ -44,5 +46,6 @@ public class ClientService {
     // Eliminar
     public void delete(Long id) {
         clientRepository.deleteById(id);
+        clientReportCache.markClientDirty(id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,118 @@
+package com.dark.dss.service;
+
+import com.dark.dss.analytics.RegressionModel;
+import com.dark.dss.analytics.SufficientStatistics;
+import com.dark.dss.entity.ProductForecast;
+import com.dark.dss.entity.ProductStatistics;
+import com.dark.dss.repository.ProductForecastRepository;
+import com.dark.dss.repository.ProductStatisticsRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Materializa en la tabla product_forecasts el pronóstico estándar ($1,000 en publicidad) de cada producto.
+ * Un job programado recalcula solo los productos cuyas sumas cambiaron (versión de product_statistics distinta
+ * a la del último pronóstico), en lotes paralelos. Dashboards y reportes lo leen con un select por clave primaria.
+ */
+@Service
+public class ForecastService {
+
+    // Inversión estándar simulada por producto en dashboards y reportes
+    public static final double STANDARD_AD_SPEND = 1000.0;
+
+    private static final int BATCH_SIZE = 500;
+
+    private final ProductForecastRepository forecastRepository;
+    private final ProductStatisticsRepository statisticsRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public ForecastService(ProductForecastRepository forecastRepository,
+                           ProductStatisticsRepository statisticsRepository,
+                           PlatformTransactionManager transactionManager) {
+        this.forecastRepository = forecastRepository;
+        this.statisticsRepository = statisticsRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Listar todos los pronósticos materializados
+    public List<Map<String, Object>> findAll() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ProductForecast forecast : forecastRepository.findAll()) {
+            result.add(toResponse(forecast));
+        }
+        return result;
+    }
+
+    // Pronóstico de un producto (un select por clave primaria)
+    public Map<String, Object> findByProduct(Long productId) {
+        ProductForecast forecast = forecastRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Aún no hay pronóstico materializado para el producto " + productId + "."));
+        return toResponse(forecast);
+    }
+
+    // Job programado: recalcular los pronósticos desactualizados
+    @Scheduled(initialDelayString = "${dss.forecast.initial-delay-ms:60000}",
+               fixedDelayString = "${dss.forecast.refresh-interval-ms:300000}")
+    public void refreshForecasts() {
+        long start = System.currentTimeMillis();
+        List<ProductStatistics> stale = statisticsRepository.findWithStaleForecast();
+
+        // Lotes de BATCH_SIZE productos calculados y guardados en paralelo, cada uno en su propia transacción
+        int batches = (stale.size() + BATCH_SIZE - 1) / BATCH_SIZE;
+        IntStream.range(0, batches).parallel().forEach(b -> {
+            List<ProductStatistics> batch = stale.subList(b * BATCH_SIZE, Math.min(stale.size(), (b + 1) * BATCH_SIZE));
+            List<ProductForecast> forecasts = new ArrayList<>(batch.size());
+            for (ProductStatistics row : batch) {
+                forecasts.add(fit(row));
+            }
+            transactionTemplate.executeWithoutResult(status -> forecastRepository.saveAll(forecasts));
+        });
+
+        Integer removed = transactionTemplate.execute(status -> forecastRepository.deleteOrphans());
+
+        if (!stale.isEmpty() || (removed != null && removed > 0)) {
+            System.out.println("Pronósticos materializados: " + stale.size() + " actualizados, " + removed
+                    + " eliminados en " + (System.currentTimeMillis() - start) + " ms");
+        }
+    }
+
+    private ProductForecast fit(ProductStatistics row) {
+        SufficientStatistics stats = ProductStatisticsService.toStatistics(row);
+        Integer predictedUnits = null;
+        Double accuracy = null;
+
+        if (stats.count() >= 3) {
+            try {
+                RegressionModel model = stats.toModel();
+                predictedUnits = (int) Math.round(model.predict(STANDARD_AD_SPEND));
+                accuracy = model.rSquared();
+            } catch (RuntimeException ignored) {
+                // Sin variación en la inversión: se guarda sin predicción para no reintentarlo en cada ciclo
+            }
+        }
+
+        // Los reportes leen la correlación de aquí para no volver a consultar las sumas
+        return new ProductForecast(row.getProductId(), STANDARD_AD_SPEND, predictedUnits, accuracy,
+                stats.correlation(), row.getVersion(), LocalDateTime.now());
+    }
+
+    private Map<String, Object> toResponse(ProductForecast forecast) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("product_id", forecast.getProductId());
+        response.put("ad_spend", forecast.getAdSpend());
+        response.put("predicted_units", forecast.getPredictedUnits());
+        response.put("model_accuracy", forecast.getModelAccuracy());
+        response.put("model_version", forecast.getModelVersion());
+        response.put("fitted_at", forecast.getFittedAt());
+        return response;
+    }
+}
@@ -0,0 +1,50 @@
+package com.dark.dss.service;
+
+import com.dark.dss.entity.Metric;
+import com.dark.dss.repository.MetricRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Ruta de escritura masiva de métricas (carga de Excel).
+ * Con IDs de secuencia (metrics_seq, bloques de 50) Hibernate agrupa los INSERT en lotes JDBC de
+ * hibernate.jdbc.batch_size filas y el driver de PostgreSQL los reescribe como INSERT multi-fila
+ * (reWriteBatchedInserts). Tras cada bloque se vacía el contexto de persistencia para que la memoria no crezca.
+ */
+@Service
+public class MetricBulkWriter implements SmartInitializingSingleton {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final MetricRepository metricRepository;
+
+    public MetricBulkWriter(MetricRepository metricRepository) {
+        this.metricRepository = metricRepository;
+    }
+
+    // Alinear la secuencia antes de aceptar tráfico (bases creadas cuando metrics.id era IDENTITY).
+    // Es seguro en cada instancia: la secuencia solo avanza, nunca se reinicia a un valor menor
+    @Override
+    public void afterSingletonsInstantiated() {
+        long next = metricRepository.alignIdSequence();
+        System.out.println("Secuencia metrics_seq alineada en " + next);
+    }
+
+    // Insertar un bloque de métricas nuevas dentro de la transacción del llamador y liberar sus entidades
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void write(List<Metric> metrics) {
+        if (metrics.isEmpty()) return;
+        for (Metric metric : metrics) {
+            entityManager.persist(metric);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
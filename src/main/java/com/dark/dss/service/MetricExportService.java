@@ -0,0 +1,187 @@
+package com.dark.dss.service;
+
+import com.dark.dss.dto.MetricExportRow;
+import com.dark.dss.repository.MetricRepository;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportaciones masivas del histórico de métricas (unido al ASIN y nombre del producto) para análisis de datos:
+ * CSV (opcionalmente comprimido con gzip) y Arrow IPC en formato stream (columnar, tipado).
+ * Ambas leen la tabla por cursor con una proyección a DTO y escriben directamente en el flujo de salida,
+ * así que la memoria no depende del número de métricas exportadas.
+ */
+@Service
+public class MetricExportService {
+
+    // Rango por defecto cuando no se indica filtro de fechas
+    public static final LocalDate MIN_DATE = LocalDate.of(1900, 1, 1);
+    public static final LocalDate MAX_DATE = LocalDate.of(9999, 12, 31);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Filas por lote (record batch) de Arrow
+    private static final int ARROW_BATCH_ROWS = 64 * 1024;
+
+    private static final String CSV_HEADER = "metric_id,product_asin,product_name,date,sales_units,ad_spend,revenue\n";
+
+    private static final Schema ARROW_SCHEMA = new Schema(List.of(
+            new Field("metric_id", FieldType.notNullable(new ArrowType.Int(64, true)), null),
+            new Field("product_asin", FieldType.notNullable(ArrowType.Utf8.INSTANCE), null),
+            new Field("product_name", FieldType.notNullable(ArrowType.Utf8.INSTANCE), null),
+            new Field("date", FieldType.notNullable(new ArrowType.Date(DateUnit.DAY)), null),
+            new Field("sales_units", FieldType.notNullable(new ArrowType.Int(32, true)), null),
+            new Field("ad_spend", FieldType.notNullable(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)), null),
+            new Field("revenue", FieldType.notNullable(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)), null)
+    ));
+
+    private final MetricRepository metricRepository;
+
+    public MetricExportService(MetricRepository metricRepository) {
+        this.metricRepository = metricRepository;
+    }
+
+    public static void validateRange(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("La fecha inicial no puede ser posterior a la fecha final.");
+        }
+    }
+
+    // CSV RFC 4180 (UTF-8). Con gzip el flujo se comprime mientras se escribe.
+    @Transactional(readOnly = true)
+    public void writeCsv(LocalDate from, LocalDate to, boolean gzip, OutputStream out) throws IOException {
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        Writer writer = new BufferedWriter(
+                new OutputStreamWriter(gzipStream != null ? gzipStream : out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        try (Stream<MetricExportRow> rows = metricRepository.streamExportRows(from, to)) {
+            writer.write(CSV_HEADER);
+            Iterator<MetricExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                MetricExportRow row = iterator.next();
+                writer.write(String.valueOf(row.id()));
+                writer.write(',');
+                writeCsvField(writer, row.asin());
+                writer.write(',');
+                writeCsvField(writer, row.productName());
+                writer.write(',');
+                writer.write(row.date().toString());
+                writer.write(',');
+                writer.write(String.valueOf(row.salesUnits()));
+                writer.write(',');
+                writer.write(String.valueOf(row.adSpend()));
+                writer.write(',');
+                writer.write(String.valueOf(row.revenue()));
+                writer.write('\n');
+            }
+        }
+
+        // Vaciar búferes y cerrar el bloque gzip sin cerrar el flujo de la respuesta
+        writer.flush();
+        if (gzipStream != null) {
+            gzipStream.finish();
+        }
+        out.flush();
+    }
+
+    private void writeCsvField(Writer writer, String value) throws IOException {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    // Arrow IPC (formato stream): lotes de ARROW_BATCH_ROWS filas escritos a medida que se leen del cursor
+    @Transactional(readOnly = true)
+    public void writeArrow(LocalDate from, LocalDate to, OutputStream out) throws IOException {
+        try (BufferAllocator allocator = new RootAllocator();
+             VectorSchemaRoot root = VectorSchemaRoot.create(ARROW_SCHEMA, allocator);
+             ArrowStreamWriter writer = new ArrowStreamWriter(root, null, Channels.newChannel(nonClosing(out)));
+             Stream<MetricExportRow> rows = metricRepository.streamExportRows(from, to)) {
+
+            BigIntVector id = (BigIntVector) root.getVector("metric_id");
+            VarCharVector asin = (VarCharVector) root.getVector("product_asin");
+            VarCharVector name = (VarCharVector) root.getVector("product_name");
+            DateDayVector date = (DateDayVector) root.getVector("date");
+            IntVector salesUnits = (IntVector) root.getVector("sales_units");
+            Float8Vector adSpend = (Float8Vector) root.getVector("ad_spend");
+            Float8Vector revenue = (Float8Vector) root.getVector("revenue");
+
+            writer.start();
+            root.allocateNew();
+            int count = 0;
+
+            Iterator<MetricExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                MetricExportRow row = iterator.next();
+                id.setSafe(count, row.id());
+                asin.setSafe(count, row.asin().getBytes(StandardCharsets.UTF_8));
+                name.setSafe(count, row.productName().getBytes(StandardCharsets.UTF_8));
+                date.setSafe(count, (int) row.date().toEpochDay());
+                salesUnits.setSafe(count, row.salesUnits());
+                adSpend.setSafe(count, row.adSpend());
+                revenue.setSafe(count, row.revenue());
+
+                if (++count == ARROW_BATCH_ROWS) {
+                    root.setRowCount(count);
+                    writer.writeBatch();
+                    root.allocateNew();
+                    count = 0;
+                }
+            }
+
+            if (count > 0) {
+                root.setRowCount(count);
+                writer.writeBatch();
+            }
+            writer.end();
+        }
+    }
+
+    // El escritor de Arrow cierra su canal al terminar; el flujo de la respuesta lo cierra el contenedor
+    private static OutputStream nonClosing(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+}
@@ -1,17 +1,19 @@
 package com.dark.dss.service;
 
+import com.dark.dss.analytics.SufficientStatistics;
 import com.dark.dss.entity.Metric;
 import com.dark.dss.entity.Product;
 import com.dark.dss.repository.MetricRepository;
 import com.dark.dss.repository.ProductRepository;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.usermodel.DateUtil;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.*;
@@ -19,12 +21,40 @@ import java.util.*;
 @Service
 public class MetricService {
 
+    // Columnas de la plantilla de carga: ASIN, fecha, unidades vendidas, inversión publicitaria, ingresos
+    private static final int UPLOAD_COLUMNS = 5;
+
+    // Filas por bloque de inserción en la carga masiva (múltiplo de hibernate.jdbc.batch_size)
+    private static final int UPLOAD_CHUNK_SIZE = 1000;
+
+    // Formatos de fecha aceptados en texto (Agrega más si necesitas)
+    private static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd"), // 2024-01-31 (Estándar ISO)
+            DateTimeFormatter.ofPattern("dd/MM/yyyy"), // 31/01/2024 (Latam/España)
+            DateTimeFormatter.ofPattern("M/d/yyyy"),   // 1/31/2024 (USA)
+            DateTimeFormatter.ofPattern("dd-MM-yyyy"), // 31-01-2024
+            DateTimeFormatter.ofPattern("yyyy/MM/dd")  // 2024/01/31
+    );
+
     private final MetricRepository metricRepository;
     private final ProductRepository productRepository;
-
-    public MetricService(MetricRepository metricRepository, ProductRepository productRepository) {
+    private final PredictionModelCache modelCache;
+    private final ProductStatisticsService statisticsService;
+    private final ClientReportCache clientReportCache;
+    private final MetricBulkWriter bulkWriter;
+
+    public MetricService(MetricRepository metricRepository,
+                         ProductRepository productRepository,
+                         PredictionModelCache modelCache,
+                         ProductStatisticsService statisticsService,
+                         ClientReportCache clientReportCache,
+                         MetricBulkWriter bulkWriter) {
         this.metricRepository = metricRepository;
         this.productRepository = productRepository;
+        this.modelCache = modelCache;
+        this.statisticsService = statisticsService;
+        this.clientReportCache = clientReportCache;
+        this.bulkWriter = bulkWriter;
     }
 
     // Listar todas (Admin)
@@ -76,6 +106,7 @@ public class MetricService {
     }
 
     // Guardar OPTIMIZADO
+    @Transactional
     public Metric save(Metric metric) {
         if (metric.getProduct() == null || metric.getProduct().getId() == null) {
             throw new RuntimeException("Es necesario especificar el producto (product_id).");
@@ -91,12 +122,20 @@ public class MetricService {
         }
         // Si el producto ya está completamente cargado, no hacemos consulta adicional
 
-        return metricRepository.save(metric);
+        Metric saved = metricRepository.save(metric);
+        statisticsService.recordAdded(saved);
+        modelCache.invalidate(productId);
+        clientReportCache.markProductDirty(productId);
+        return saved;
     }
 
     // Actualizar OPTIMIZADO
+    @Transactional
     public Metric update(Long id, Metric details) {
         Metric metric = findById(id);
+        Long previousProductId = metric.getProduct() != null ? metric.getProduct().getId() : null;
+        double previousAdSpend = metric.getAdSpend();
+        double previousSalesUnits = metric.getSalesUnits();
 
         metric.setDate(details.getDate());
         metric.setSalesUnits(details.getSalesUnits());
@@ -114,23 +153,43 @@ public class MetricService {
             }
         }
 
-        return metricRepository.save(metric);
+        Metric saved = metricRepository.save(metric);
+
+        // Estadísticos: quitar los valores anteriores y sumar los nuevos
+        statisticsService.recordRemoved(previousProductId, previousAdSpend, previousSalesUnits);
+        statisticsService.recordAdded(saved);
+
+        // Invalidar tanto el producto anterior como el nuevo (si la métrica cambió de producto)
+        modelCache.invalidate(previousProductId);
+        clientReportCache.markProductDirty(previousProductId);
+        modelCache.invalidate(saved.getProduct().getId());
+        clientReportCache.markProductDirty(saved.getProduct().getId());
+        return saved;
     }
 
     // Eliminar
+    @Transactional
     public void delete(Long id) {
-        metricRepository.deleteById(id);
+        metricRepository.findById(id).ifPresent(metric -> {
+            Long productId = metric.getProduct().getId();
+            metricRepository.delete(metric);
+            statisticsService.recordRemoved(productId, metric.getAdSpend(), metric.getSalesUnits());
+            modelCache.invalidate(productId);
+            clientReportCache.markProductDirty(productId);
+        });
     }
 
     // CARGA MASIVA OPTIMIZADA
+    // OPTIMIZACIÓN: La hoja se lee en streaming (SAX, MetricSheetReader) y las métricas se insertan por bloques de
+    // UPLOAD_CHUNK_SIZE con lotes JDBC reales (MetricBulkWriter); tras cada bloque se vacía el contexto de persistencia,
+    // así que la memoria no crece con el tamaño del archivo. Todo ocurre en una sola transacción: un error en
+    // cualquier fila revierte la carga completa. El mensaje de respuesta incluye el rendimiento (filas/s).
+    @Transactional
     public String saveMetricsFromExcel(MultipartFile file) {
         if (file.isEmpty()) {
             throw new RuntimeException("El archivo Excel está vacío.");
         }
 
-        List<Metric> metricsList = new ArrayList<>();
-        int rowCount = 0;
-
         // OPTIMIZACIÓN: Cargar todos los productos una sola vez al inicio
         List<Product> allProducts = productRepository.findAll();
         Map<String, Product> productsByAsin = new HashMap<>();
@@ -140,36 +199,45 @@ public class MetricService {
 
         System.out.println("Productos cargados en memoria: " + productsByAsin.size());
 
-        // Leer Excel
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(0);
+        long start = System.nanoTime();
+        List<Metric> chunk = new ArrayList<>(UPLOAD_CHUNK_SIZE);
+        // Delta de estadísticos por producto, acumulado durante la lectura y aplicado una sola vez
+        Map<Long, SufficientStatistics> deltas = new HashMap<>();
+        int[] rowCount = {0};
 
-            for (Row row : sheet) {
-                if (row.getRowNum() == 0) continue; // Saltar encabezados
+        Path tempFile = null;
+        try {
+            // El paquete .xlsx se abre desde disco (acceso aleatorio al zip) en lugar de cargarlo completo en memoria
+            tempFile = Files.createTempFile("metricas-", ".xlsx");
+            file.transferTo(tempFile);
+
+            // Leer Excel
+            MetricSheetReader.read(tempFile, UPLOAD_COLUMNS, (rowNumber, values) -> {
+                if (rowNumber == 1) return; // Saltar encabezados
 
                 // 1. ASIN
-                String asin = getCellValueAsString(row.getCell(0));
-                if (asin.trim().isEmpty()) continue;
+                String asin = values[0];
+                if (asin.isEmpty()) return;
 
                 // OPTIMIZACIÓN: Búsqueda en memoria en lugar de consulta a BD
                 Product product = productsByAsin.get(asin);
                 if (product == null) {
-                    throw new RuntimeException("Fila " + (row.getRowNum() + 1) + ": No existe producto con ASIN " + asin);
+                    throw new RuntimeException("Fila " + rowNumber + ": No existe producto con ASIN " + asin);
                 }
 
                 // 2. FECHA (Soporta múltiples formatos)
                 LocalDate date;
                 try {
-                    date = parseExcelDate(row.getCell(1));
+                    date = parseExcelDate(values[1]);
                 } catch (Exception e) {
-                    throw new RuntimeException("Error de fecha en fila " + (row.getRowNum() + 1) + ": " + e.getMessage());
+                    throw new RuntimeException("Error de fecha en fila " + rowNumber + ": " + e.getMessage());
                 }
 
                 // 3. NÚMEROS
                 try {
-                    Integer salesUnits = (int) getCellValueAsDouble(row.getCell(2));
-                    Double adSpend = getCellValueAsDouble(row.getCell(3));
-                    Double revenue = getCellValueAsDouble(row.getCell(4));
+                    Integer salesUnits = (int) parseExcelNumber(values[2]);
+                    Double adSpend = parseExcelNumber(values[3]);
+                    Double revenue = parseExcelNumber(values[4]);
 
                     Metric metric = new Metric();
                     metric.setProduct(product);
@@ -178,52 +246,61 @@ public class MetricService {
                     metric.setAdSpend(adSpend);
                     metric.setRevenue(revenue);
 
-                    metricsList.add(metric);
-                    rowCount++;
+                    chunk.add(metric);
+                    deltas.computeIfAbsent(product.getId(), k -> new SufficientStatistics())
+                            .add(adSpend, salesUnits);
+                    rowCount[0]++;
                 } catch (Exception e) {
-                    throw new RuntimeException("Error numérico en fila " + (row.getRowNum() + 1) + ": " + e.getMessage());
+                    throw new RuntimeException("Error numérico en fila " + rowNumber + ": " + e.getMessage());
                 }
-            }
-
-            // OPTIMIZACIÓN: Guardar todas las métricas de una vez (batch insert)
-            if (!metricsList.isEmpty()) {
-                metricRepository.saveAll(metricsList);
-            }
 
-            return "Carga exitosa: Se procesaron " + rowCount + " métricas de " + productsByAsin.size() + " productos disponibles.";
+                if (chunk.size() == UPLOAD_CHUNK_SIZE) {
+                    saveChunk(chunk);
+                }
+            });
+            saveChunk(chunk);
 
         } catch (IOException e) {
             throw new RuntimeException("Error al leer archivo: " + e.getMessage());
+        } finally {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException ignored) {
+                    // El sistema operativo limpia el directorio temporal
+                }
+            }
         }
-    }
 
-    // HELPER DE FECHAS
-    private LocalDate parseExcelDate(Cell cell) {
-        if (cell == null) throw new RuntimeException("Celda de fecha vacía");
+        if (!deltas.isEmpty()) {
+            statisticsService.applyAll(deltas);
 
-        // 1. Si es formato nativo de Excel (Fecha o Número Serial)
-        if (cell.getCellType() == CellType.NUMERIC) {
-            if (DateUtil.isCellDateFormatted(cell)) {
-                return cell.getDateCellValue().toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-            }
-            // Si es un número puro (ej. 45292)
-            return DateUtil.getJavaDate(cell.getNumericCellValue()).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+            // Invalidar los modelos de todos los productos afectados por la carga
+            modelCache.invalidateAll(deltas.keySet());
+            clientReportCache.markProductsDirty(deltas.keySet());
         }
 
-        // 2. Si es Texto, probamos varios formatos
-        String dateStr = getCellValueAsString(cell).trim();
-        if (dateStr.isEmpty()) throw new RuntimeException("Fecha vacía");
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long rowsPerSecond = rowCount[0] * 1000L / elapsedMs;
+        System.out.println("Carga de métricas: " + rowCount[0] + " filas en " + elapsedMs + " ms (" + rowsPerSecond + " filas/s)");
+
+        return "Carga exitosa: Se procesaron " + rowCount[0] + " métricas de " + productsByAsin.size()
+                + " productos disponibles en " + elapsedMs + " ms (" + rowsPerSecond + " filas/s).";
+    }
+
+    // Insertar un bloque de la carga masiva (lotes JDBC) y liberar sus entidades del contexto de persistencia
+    private void saveChunk(List<Metric> chunk) {
+        if (chunk.isEmpty()) return;
+        bulkWriter.write(chunk);
+        chunk.clear();
+    }
 
-        // Lista de formatos aceptados (Agrega más si necesitas)
-        List<DateTimeFormatter> formatters = Arrays.asList(
-                DateTimeFormatter.ofPattern("yyyy-MM-dd"), // 2024-01-31 (Estándar ISO)
-                DateTimeFormatter.ofPattern("dd/MM/yyyy"), // 31/01/2024 (Latam/España)
-                DateTimeFormatter.ofPattern("M/d/yyyy"),   // 1/31/2024 (USA)
-                DateTimeFormatter.ofPattern("dd-MM-yyyy"), // 31-01-2024
-                DateTimeFormatter.ofPattern("yyyy/MM/dd")  // 2024/01/31
-        );
+    // HELPER DE FECHAS (las fechas nativas de Excel llegan del lector ya en formato ISO)
+    private LocalDate parseExcelDate(String value) {
+        String dateStr = value.trim();
+        if (dateStr.isEmpty()) throw new RuntimeException("Fecha vacía");
 
-        for (DateTimeFormatter formatter : formatters) {
+        for (DateTimeFormatter formatter : DATE_FORMATS) {
             try {
                 return LocalDate.parse(dateStr, formatter);
             } catch (DateTimeParseException ignored) {
@@ -231,42 +308,25 @@ public class MetricService {
             }
         }
 
-        // Si fallaron los formatos de texto, intentamos ver si es un número serial escrito como texto (ej "45292")
+        // Si fallaron los formatos de texto, intentamos ver si es un número serial (ej "45292")
         if (dateStr.matches("-?\\d+(\\.\\d+)?")) {
-            try {
-                double serial = Double.parseDouble(dateStr);
-                return DateUtil.getJavaDate(serial).toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
-            } catch (Exception ignored) {}
+            double serial = Double.parseDouble(dateStr);
+            if (DateUtil.isValidExcelDate(serial)) {
+                return DateUtil.getLocalDateTime(serial).toLocalDate();
+            }
         }
 
         throw new RuntimeException("Formato de fecha no reconocido: '" + dateStr + "'. Use dd/MM/yyyy o yyyy-MM-dd.");
     }
 
     // HELPER DE VALORES
-    private String getCellValueAsString(Cell cell) {
-        if (cell == null) return "";
-        switch (cell.getCellType()) {
-            case STRING: return cell.getStringCellValue().trim();
-            case NUMERIC: return String.valueOf((long) cell.getNumericCellValue());
-            case BOOLEAN: return String.valueOf(cell.getBooleanCellValue());
-            default: return "";
-        }
-    }
-
-    // HELPER DE VALORES
-    private double getCellValueAsDouble(Cell cell) {
-        if (cell == null) return 0.0;
-        switch (cell.getCellType()) {
-            case NUMERIC: return cell.getNumericCellValue();
-            case STRING:
-                String text = cell.getStringCellValue().trim().replace(",", ""); // Limpiar comas
-                if (text.isEmpty()) return 0.0;
-                try {
-                    return Double.parseDouble(text);
-                } catch (NumberFormatException e) {
-                    throw new RuntimeException("Valor no numérico: " + text);
-                }
-            default: return 0.0;
+    private double parseExcelNumber(String value) {
+        String text = value.trim().replace(",", ""); // Limpiar comas
+        if (text.isEmpty()) return 0.0;
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Valor no numérico: " + text);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package com.dark.dss.service;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Lectura de la primera hoja de un .xlsx con el modelo de eventos (SAX) de POI.
+ * A diferencia de XSSFWorkbook no construye el árbol de la hoja: cada fila se entrega al RowHandler
+ * en cuanto se lee y se descarta, así que la memoria no depende del número de filas
+ * (solo se conserva la tabla de textos compartidos del libro).
+ * Valores entregados como texto: fechas en ISO (yyyy-MM-dd), números sin formato de presentación
+ * (sin separadores de miles ni símbolos de moneda) y celdas vacías como "".
+ */
+public final class MetricSheetReader {
+
+    @FunctionalInterface
+    public interface RowHandler {
+        // rowNumber empieza en 1, como en Excel
+        void row(int rowNumber, String[] values);
+    }
+
+    private MetricSheetReader() {
+    }
+
+    public static void read(Path file, int columns, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(file.toFile(), PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                throw new RuntimeException("El archivo Excel no contiene hojas.");
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(styles, strings,
+                        new RowCollector(columns, handler), new RawValueFormatter(), false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (SAXException e) {
+            // Los errores de validación del RowHandler viajan dentro de la excepción del parser
+            if (e.getException() instanceof RuntimeException runtime) throw runtime;
+            throw new RuntimeException("Error al leer archivo: " + e.getMessage());
+        } catch (OpenXML4JException | ParserConfigurationException e) {
+            throw new RuntimeException("Error al leer archivo: " + e.getMessage());
+        }
+    }
+
+    // Reúne las celdas de cada fila en un arreglo por posición de columna
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final String[] values;
+        private final RowHandler handler;
+
+        RowCollector(int columns, RowHandler handler) {
+            this.values = new String[columns];
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            Arrays.fill(values, "");
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            handler.row(rowNum + 1, values);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (cellReference == null || formattedValue == null) return;
+            int column = new CellReference(cellReference).getCol();
+            if (column < values.length) {
+                values[column] = formattedValue.trim();
+            }
+        }
+    }
+
+    // Fechas en ISO y números con su valor exacto, sin depender del formato de la celda ni de la configuración regional
+    private static final class RawValueFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value).toLocalDate().toString();
+            }
+            return NumberToTextConverter.toText(value);
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.dark.dss.service;
+
+import com.dark.dss.analytics.BivariateAccumulator;
+import com.dark.dss.analytics.BudgetAllocator;
+import com.dark.dss.analytics.RegressionModel;
+import com.dark.dss.analytics.SufficientStatistics;
+import com.dark.dss.entity.Product;
+import com.dark.dss.repository.MetricRepository;
+import com.dark.dss.repository.ProductRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Análisis a nivel portafolio (todos los productos de un cliente o de la empresa a la vez).
+ * Sustituye cientos de llamadas a calculateCorrelation por un único recorrido de la tabla de métricas.
+ */
+@Service
+public class PortfolioAnalyticsService {
+
+    private final MetricRepository metricRepository;
+    private final ProductRepository productRepository;
+    private final ProductStatisticsService statisticsService;
+
+    public PortfolioAnalyticsService(MetricRepository metricRepository,
+                                     ProductRepository productRepository,
+                                     ProductStatisticsService statisticsService) {
+        this.metricRepository = metricRepository;
+        this.productRepository = productRepository;
+        this.statisticsService = statisticsService;
+    }
+
+    // Correlación publicidad/ventas de TODOS los productos: una sola consulta a las sumas acumuladas
+    public List<Map<String, Object>> allProductCorrelations() {
+        List<Product> products = productRepository.findAll();
+        Map<Long, SufficientStatistics> statsByProduct = statisticsService.findAll();
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Product product : products) {
+            SufficientStatistics stats = statsByProduct.getOrDefault(product.getId(), new SufficientStatistics());
+            result.add(productCorrelation(product, stats.count(), stats.correlation()));
+        }
+        return result;
+    }
+
+    /**
+     * Correlaciones de un cliente en un solo recorrido (cursor) de sus métricas ordenadas por fecha:
+     * 1. Pearson publicidad/ventas por producto con acumuladores de Welford.
+     * 2. Matriz de correlación de ingresos entre productos, alineando las series por fecha.
+     *    Cada fila de la matriz se calcula en paralelo (un producto por tarea).
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> clientCorrelations(Long clientId) {
+        List<Product> products = productRepository.findByClientId(clientId);
+        if (products.isEmpty()) {
+            throw new RuntimeException("El cliente no tiene productos registrados.");
+        }
+
+        int productCount = products.size();
+        Map<Long, Integer> indexByProduct = new HashMap<>();
+        for (int i = 0; i < productCount; i++) {
+            indexByProduct.put(products.get(i).getId(), i);
+        }
+
+        BivariateAccumulator[] adSales = new BivariateAccumulator[productCount];
+        for (int i = 0; i < productCount; i++) {
+            adSales[i] = new BivariateAccumulator();
+        }
+
+        // Ingresos por fecha: una fila por fecha con una columna por producto (NaN = sin dato ese día)
+        List<double[]> revenueByDate = new ArrayList<>();
+        LocalDate currentDate = null;
+        double[] currentRow = null;
+
+        try (Stream<Object[]> rows = metricRepository.streamSeriesByClientId(clientId)) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                Integer index = indexByProduct.get((Long) row[0]);
+                if (index == null) continue;
+
+                LocalDate date = (LocalDate) row[1];
+                double adSpend = ((Number) row[2]).doubleValue();
+                double salesUnits = ((Number) row[3]).doubleValue();
+                double revenue = ((Number) row[4]).doubleValue();
+
+                adSales[index].add(adSpend, salesUnits);
+
+                if (!date.equals(currentDate)) {
+                    currentDate = date;
+                    currentRow = new double[productCount];
+                    Arrays.fill(currentRow, Double.NaN);
+                    revenueByDate.add(currentRow);
+                }
+                // Varias métricas del mismo producto en el mismo día se suman
+                currentRow[index] = Double.isNaN(currentRow[index]) ? revenue : currentRow[index] + revenue;
+            }
+        }
+
+        // Transponer a una serie contigua por producto para recorrerla eficientemente en paralelo
+        int dateCount = revenueByDate.size();
+        double[][] revenueSeries = new double[productCount][dateCount];
+        for (int d = 0; d < dateCount; d++) {
+            double[] row = revenueByDate.get(d);
+            for (int i = 0; i < productCount; i++) {
+                revenueSeries[i][d] = row[i];
+            }
+        }
+
+        Double[][] matrix = new Double[productCount][productCount];
+        IntStream.range(0, productCount).parallel().forEach(i -> {
+            BivariateAccumulator pair = new BivariateAccumulator();
+            matrix[i][i] = 1.0;
+            for (int j = i + 1; j < productCount; j++) {
+                pair.reset();
+                double[] a = revenueSeries[i];
+                double[] b = revenueSeries[j];
+                for (int d = 0; d < dateCount; d++) {
+                    if (!Double.isNaN(a[d]) && !Double.isNaN(b[d])) {
+                        pair.add(a[d], b[d]);
+                    }
+                }
+                double r = pair.correlation();
+                Double value = Double.isNaN(r) ? null : r; // null: menos de 2 fechas en común o serie constante
+                matrix[i][j] = value;
+                matrix[j][i] = value;
+            }
+        });
+
+        List<Map<String, Object>> productResults = new ArrayList<>();
+        List<Long> productIds = new ArrayList<>();
+        for (int i = 0; i < productCount; i++) {
+            productResults.add(productCorrelation(products.get(i), adSales[i].count(), adSales[i].correlation()));
+            productIds.add(products.get(i).getId());
+        }
+
+        Map<String, Object> revenueCorrelation = new HashMap<>();
+        revenueCorrelation.put("product_ids", productIds);
+        revenueCorrelation.put("matrix", matrix);
+        revenueCorrelation.put("dates_analyzed", dateCount);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("client_id", clientId);
+        result.put("products", productResults);
+        result.put("revenue_correlation", revenueCorrelation);
+        return result;
+    }
+
+    /**
+     * Reparto de un presupuesto publicitario entre los productos de un cliente para maximizar el ingreso previsto
+     * (predicted_units * price). El tope de cada producto es la inversión máxima observada en su historial (fuera de
+     * ese rango la recta es una extrapolación) y las unidades negativas se recortan a 0.
+     * Con el modelo lineal cada dólar rinde slope * price, así que los productos con intercepto no negativo se llenan
+     * de mayor a menor ingreso marginal. Los de intercepto negativo no venden hasta el cruce por cero
+     * (-intercept / slope): BudgetAllocator busca qué combinación de ellos conviene financiar (ramificación y
+     * acotamiento sobre fork/join). El resultado es el óptimo exacto salvo que haya más de
+     * BudgetAllocator.MAX_EXACT_CROSSINGS productos con cruce alcanzable (exact = false).
+     * Los modelos salen de dos consultas agrupadas (sumas y máximos); sin llamadas a predictSales por producto.
+     */
+    public Map<String, Object> optimizeBudget(Long clientId, double budget) {
+        if (!(budget > 0) || Double.isInfinite(budget)) {
+            throw new RuntimeException("El presupuesto debe ser un monto positivo.");
+        }
+        List<Product> products = productRepository.findByClientId(clientId);
+        if (products.isEmpty()) {
+            throw new RuntimeException("El cliente no tiene productos registrados.");
+        }
+
+        Map<Long, SufficientStatistics> statsByProduct = statisticsService.findByProducts(
+                products.stream().map(Product::getId).toList());
+        Map<Long, Double> maxSpendByProduct = new HashMap<>();
+        for (Object[] row : metricRepository.findMaxAdSpendByClientId(clientId)) {
+            maxSpendByProduct.put((Long) row[0], ((Number) row[1]).doubleValue());
+        }
+
+        // 1. Ajuste de cada producto (O(1) a partir de sus sumas)
+        List<BudgetCandidate> candidates = new ArrayList<>();
+        List<Map<String, Object>> excluded = new ArrayList<>();
+        for (Product product : products) {
+            SufficientStatistics stats = statsByProduct.get(product.getId());
+            if (stats == null || stats.count() < 3) {
+                excluded.add(Map.of("product_id", product.getId(),
+                        "reason", "Se necesitan al menos 3 registros históricos para una predicción fiable."));
+                continue;
+            }
+            try {
+                RegressionModel model = stats.toModel();
+                double cap = maxSpendByProduct.getOrDefault(product.getId(), 0.0);
+                candidates.add(new BudgetCandidate(product, model,
+                        new BudgetAllocator.Item(model.intercept(), model.slope(), product.getPrice(), cap)));
+            } catch (RuntimeException e) {
+                excluded.add(Map.of("product_id", product.getId(), "reason", e.getMessage()));
+            }
+        }
+
+        // 2. Mejor reparto (los productos con cruce por cero se deciden por búsqueda, el resto por llenado voraz)
+        BudgetAllocator.Allocation allocation = BudgetAllocator.allocate(
+                candidates.stream().map(BudgetCandidate::item).toArray(BudgetAllocator.Item[]::new), budget);
+
+        double allocated = 0.0;
+        double totalRevenue = 0.0;
+        List<Map<String, Object>> allocations = new ArrayList<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            BudgetCandidate candidate = candidates.get(i);
+            double spend = allocation.spend()[i];
+            allocated += spend;
+            // Unidades negativas no generan ingresos: se recortan a 0
+            double units = Math.max(0.0, candidate.model().predict(spend));
+            double revenue = units * candidate.product().getPrice();
+            totalRevenue += revenue;
+
+            Map<String, Object> item = new HashMap<>();
+            item.put("product_id", candidate.product().getId());
+            item.put("name", candidate.product().getName());
+            item.put("ad_spend", spend);
+            item.put("max_ad_spend", candidate.item().cap());
+            item.put("predicted_units", (int) Math.round(units));
+            item.put("predicted_revenue", revenue);
+            item.put("marginal_revenue_per_dollar", candidate.model().slope() * candidate.product().getPrice());
+            item.put("zero_units_ad_spend", candidate.item().zeroCrossing());
+            allocations.add(item);
+        }
+        // Mayor inversión primero; a igual inversión, mayor ingreso marginal
+        allocations.sort(Comparator.comparingDouble((Map<String, Object> item) -> (Double) item.get("ad_spend"))
+                .thenComparingDouble(item -> (Double) item.get("marginal_revenue_per_dollar"))
+                .reversed());
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("client_id", clientId);
+        result.put("budget", budget);
+        result.put("allocated_budget", allocated);
+        result.put("unallocated_budget", budget - allocated);
+        result.put("predicted_revenue", totalRevenue);
+        result.put("exact", allocation.exact());
+        result.put("allocations", allocations);
+        result.put("excluded_products", excluded);
+        return result;
+    }
+
+    private record BudgetCandidate(Product product, RegressionModel model, BudgetAllocator.Item item) {
+    }
+
+    private Map<String, Object> productCorrelation(Product product, long samples, double r) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("product_id", product.getId());
+        item.put("asin", product.getAsin());
+        item.put("name", product.getName());
+        item.put("samples", samples);
+        if (samples >= 2 && !Double.isNaN(r)) {
+            item.put("correlation_coefficient", r);
+            item.put("interpretation", PredictionService.interpretCorrelation(r));
+        } else {
+            item.put("correlation_coefficient", null);
+            item.put("interpretation", "Datos insuficientes (mín. 2 registros con variación)");
+        }
+        return item;
+    }
+}
@@ -0,0 +1,54 @@
+package com.dark.dss.service;
+
+import com.dark.dss.analytics.RegressionModel;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registro de modelos OLS ya entrenados, indexado por ID de producto.
+ * Evita reentrenar el modelo en cada predicción mientras las métricas del producto no cambien.
+ * MetricService invalida la entrada de cada producto que toca al guardar, actualizar o eliminar métricas.
+ */
+@Component
+public class PredictionModelCache {
+
+    private final Map<Long, RegressionModel> models = new ConcurrentHashMap<>();
+
+    // Devuelve el modelo en caché o lo entrena con el loader (una sola vez por producto)
+    public RegressionModel get(Long productId, Function<Long, RegressionModel> loader) {
+        return models.computeIfAbsent(productId, loader);
+    }
+
+    // Consultar sin entrenar (null si el producto no está en caché)
+    public RegressionModel peek(Long productId) {
+        return models.get(productId);
+    }
+
+    // Invalidar el modelo de un producto cuyas métricas cambiaron
+    public void invalidate(Long productId) {
+        if (productId == null) return;
+
+        models.remove(productId);
+        // Dentro de una transacción se invalida otra vez al confirmar, por si una lectura concurrente
+        // volvió a entrenar el modelo con los datos anteriores al commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    models.remove(productId);
+                }
+            });
+        }
+    }
+
+    // Invalidar varios productos de una vez (carga masiva)
+    public void invalidateAll(Collection<Long> productIds) {
+        productIds.forEach(this::invalidate);
+    }
+}
@@ -2,126 +2,402 @@
 // java
 package com.dark.dss.service;
 
-import com.dark.dss.entity.Metric;
+import com.dark.dss.analytics.BivariateAccumulator;
+import com.dark.dss.analytics.LinearRegressionKernel;
+import com.dark.dss.analytics.MonteCarloRiskSimulator;
+import com.dark.dss.analytics.RegressionModel;
+import com.dark.dss.analytics.RiskKernel;
+import com.dark.dss.analytics.RiskKernels;
+import com.dark.dss.analytics.RiskSimulationResult;
+import com.dark.dss.analytics.SufficientStatistics;
+import com.dark.dss.dto.BatchPredictionRequest;
 import com.dark.dss.entity.Product;
 import com.dark.dss.repository.MetricRepository;
 import com.dark.dss.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import smile.data.DataFrame;
-import smile.data.formula.Formula;
-import smile.data.vector.DoubleVector;
-import smile.regression.OLS;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 @Service
 public class PredictionService {
 
+    public static final long DEFAULT_RISK_ITERATIONS = 10_000;
+    public static final long MAX_RISK_ITERATIONS = 100_000_000;
+
+    // Semilla fija del reporte PDF de riesgo: descargas repetidas reutilizan la simulación en caché
+    public static final long REPORT_RISK_SEED = 20240101L;
+
+    // Límite de puntos de la curva de respuesta por solicitud
+    public static final int MAX_CURVE_POINTS = 10_000;
+
+    // Tolerancia al contar los pasos de la rejilla: (0.3 - 0) / 0.1 da 2.9999999999999996 y perdería el extremo `to`
+    private static final double CURVE_STEP_EPSILON = 1e-9;
+
+    // Límite del tamaño de la ventana deslizante (los búferes de la ventana se reservan antes de leer el historial)
+    public static final int MAX_ROLLING_WINDOW = 10_000;
+
+    // Cada cuántos pasos se recalcula la ventana desde cero para no acumular error de redondeo
+    private static final int ROLLING_RESYNC_INTERVAL = 4096;
+
     private final MetricRepository metricRepository;
     private final ProductRepository productRepository;
+    private final PredictionModelCache modelCache;
+    private final ProductStatisticsService statisticsService;
+    private final RiskSimulationCache riskCache;
+    private final RiskKernel riskKernel;
 
-    public PredictionService(MetricRepository metricRepository, ProductRepository productRepository) {
+    public PredictionService(MetricRepository metricRepository,
+                             ProductRepository productRepository,
+                             PredictionModelCache modelCache,
+                             ProductStatisticsService statisticsService,
+                             RiskSimulationCache riskCache,
+                             @Value("${dss.risk.kernel:vector}") String riskKernelName) {
         this.metricRepository = metricRepository;
         this.productRepository = productRepository;
+        this.modelCache = modelCache;
+        this.riskCache = riskCache;
+        this.statisticsService = statisticsService;
+        // Núcleo de Montecarlo elegido al arrancar: "vector" (SIMD) o "scalar"
+        this.riskKernel = RiskKernels.select(riskKernelName);
     }
 
-    // RF-07: Predicción de Ventas (Machine Learning con Smile)
+    // RF-07: Predicción de Ventas (Regresión OLS)
+    // OPTIMIZACIÓN: El modelo se entrena una sola vez por producto y se reutiliza desde la caché
+    // hasta que MetricService invalida el producto (predicción en O(1), sin consultar la BD).
     public Map<String, Object> predictSales(Long productId, Double futureAdSpend) {
-        List<Metric> history = metricRepository.findByProductIdOrderByDateAsc(productId);
+        RegressionModel model = modelCache.get(productId, this::trainModel);
 
-        // CAMBIO: Se requieren al menos 3 puntos para que el modelo OLS sea "sobredeterminado".
-        if (history.size() < 3) {
-            throw new RuntimeException("Se necesitan al menos 3 registros históricos para una predicción fiable.");
+        double predictedSales = model.predict(futureAdSpend);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("predicted_units", (int) Math.round(predictedSales));
+        result.put("future_ad_spend", futureAdSpend);
+        result.put("model_accuracy", model.rSquared());
+        result.put("model", "OLS");
+
+        return result;
+    }
+
+    /**
+     * Predicción por lotes: varios productos y varias inversiones por producto en una sola llamada.
+     * Los modelos que no están en caché se obtienen con una sola consulta para todos los productos,
+     * cada producto se ajusta una vez y todas sus inversiones se evalúan contra ese mismo ajuste.
+     * Un producto sin datos suficientes devuelve su propio "error" sin afectar al resto del lote.
+     */
+    public List<Map<String, Object>> predictSalesBatch(List<BatchPredictionRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new RuntimeException("Debe indicar al menos un producto para la predicción por lotes.");
+        }
+
+        // 1. Modelos ya entrenados en caché
+        Map<Long, RegressionModel> models = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (BatchPredictionRequest request : requests) {
+            if (request.productId() == null) {
+                throw new RuntimeException("Cada elemento del lote debe indicar productId.");
+            }
+            RegressionModel cached = modelCache.peek(request.productId());
+            if (cached != null) {
+                models.put(request.productId(), cached);
+            } else {
+                missing.add(request.productId());
+            }
         }
 
-        // Preparar datos para Smile en un DataFrame
-        double[] adSpend = history.stream().mapToDouble(Metric::getAdSpend).toArray();
-        double[] salesUnits = history.stream().mapToDouble(Metric::getSalesUnits).toArray();
+        // 2. OPTIMIZACIÓN: Una sola consulta para las sumas de todos los productos restantes
+        Map<Long, String> errors = new HashMap<>();
+        if (!missing.isEmpty()) {
+            Map<Long, SufficientStatistics> statsByProduct = statisticsService.findByProducts(missing);
+            for (Long productId : missing) {
+                try {
+                    models.put(productId, trainModel(statsByProduct.get(productId)));
+                } catch (RuntimeException e) {
+                    errors.put(productId, e.getMessage());
+                }
+            }
+        }
 
-        DataFrame df = DataFrame.of(
-                DoubleVector.of("AdSpend", adSpend),
-                DoubleVector.of("SalesUnits", salesUnits)
-        );
+        // 3. Evaluar cada inversión solicitada contra el modelo de su producto
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (BatchPredictionRequest request : requests) {
+            Map<String, Object> productResult = new HashMap<>();
+            productResult.put("product_id", request.productId());
 
-        try {
-            // Entrenar Modelo
-            Formula formula = Formula.of("SalesUnits", "AdSpend");
-            var model = OLS.fit(formula, df);
+            RegressionModel model = models.get(request.productId());
+            if (model == null) {
+                productResult.put("error", errors.get(request.productId()));
+                results.add(productResult);
+                continue;
+            }
+
+            List<Map<String, Object>> predictions = new ArrayList<>();
+            List<Double> spends = request.adSpend() != null ? request.adSpend() : List.of();
+            for (Double adSpend : spends) {
+                if (adSpend == null) continue;
+                Map<String, Object> prediction = new HashMap<>();
+                prediction.put("future_ad_spend", adSpend);
+                prediction.put("predicted_units", (int) Math.round(model.predict(adSpend)));
+                predictions.add(prediction);
+            }
+
+            productResult.put("predictions", predictions);
+            productResult.put("model_accuracy", model.rSquared());
+            productResult.put("model", "OLS");
+            results.add(productResult);
+        }
+
+        return results;
+    }
+
+    /**
+     * Curva de respuesta: unidades previstas para cada inversión de la rejilla from, from + step, ..., to.
+     * El modelo se ajusta (o se toma de la caché) una sola vez y toda la rejilla se evalúa sobre arreglos primitivos.
+     * Devuelve arreglos paralelos (inversión, unidades) en lugar de un objeto por punto. Como el modelo es lineal,
+     * las unidades marginales por dólar son iguales en toda la curva: se devuelve la pendiente una sola vez.
+     */
+    public Map<String, Object> responseCurve(Long productId, double from, double to, double step) {
+        if (!(step > 0) || !(from >= 0) || !(to >= from) || Double.isInfinite(to)) {
+            throw new RuntimeException("El rango debe cumplir 0 <= from <= to y step > 0.");
+        }
+        long points = (long) Math.floor((to - from) / step + CURVE_STEP_EPSILON) + 1;
+        if (points > MAX_CURVE_POINTS) {
+            throw new RuntimeException("La curva tendría " + points + " puntos; el máximo es " + MAX_CURVE_POINTS + ". Aumente step o reduzca el rango.");
+        }
+
+        RegressionModel model = modelCache.get(productId, this::trainModel);
+
+        int n = (int) points;
+        double[] adSpend = new double[n];
+        for (int i = 0; i < n; i++) {
+            // El último punto puede rebasar `to` por redondeo (0.30000000000000004)
+            adSpend[i] = Math.min(to, from + i * step);
+        }
+        double[] predictedUnits = new double[n];
+        LinearRegressionKernel.predict(model, adSpend, predictedUnits);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("product_id", productId);
+        result.put("points", n);
+        result.put("ad_spend", adSpend);
+        result.put("predicted_units", predictedUnits);
+        result.put("marginal_units_per_dollar", model.slope());
+        result.put("model_accuracy", model.rSquared());
+        result.put("model", "OLS");
+        return result;
+    }
+
+    /**
+     * Regresión y correlación en ventana deslizante sobre el historial del producto ordenado por fecha.
+     * Devuelve pendiente, intercepto, R² y Pearson de cada ventana de tamaño N. Los acumuladores se
+     * actualizan en O(1) por paso (entra la métrica nueva, sale la más antigua) en lugar de reentrenar cada ventana.
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> rollingRegression(Long productId, int window) {
+        if (window < 3 || window > MAX_ROLLING_WINDOW) {
+            throw new RuntimeException("La ventana debe contener entre 3 y " + MAX_ROLLING_WINDOW + " registros.");
+        }
+        // El conteo de product_statistics (lectura por clave primaria) descarta ventanas más largas que el historial
+        // antes de reservar los búferes
+        long available = statisticsService.findByProduct(productId).count();
+        if (available < window) {
+            throw new RuntimeException("El producto tiene " + available + " registros; se necesitan al menos " + window + " para una ventana de ese tamaño.");
+        }
+
+        // Búfer circular con las últimas N observaciones (memoria proporcional a la ventana, no al historial)
+        double[] windowX = new double[window];
+        double[] windowY = new double[window];
+        LocalDate[] windowDates = new LocalDate[window];
+        BivariateAccumulator accumulator = new BivariateAccumulator();
+        List<Map<String, Object>> points = new ArrayList<>();
+        long seen = 0;
 
-            // Predecir usando el metodo que acepta el vector de predictores
-            double predictedSales = model.predict(new double[]{futureAdSpend});
+        try (Stream<Object[]> rows = metricRepository.streamSeriesByProductId(productId)) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                double x = ((Number) row[1]).doubleValue();
+                double y = ((Number) row[2]).doubleValue();
+                int slot = (int) (seen % window);
 
-            Map<String, Object> result = new HashMap<>();
-            result.put("predicted_units", (int) Math.round(predictedSales));
-            result.put("future_ad_spend", futureAdSpend);
-            result.put("model_accuracy", model.RSquared());
-            result.put("model", "OLS-Smile");
+                if (seen >= window) {
+                    accumulator.remove(windowX[slot], windowY[slot]);
+                }
+                windowX[slot] = x;
+                windowY[slot] = y;
+                windowDates[slot] = (LocalDate) row[0];
+                accumulator.add(x, y);
+                seen++;
 
-            return result;
-        } catch (NoClassDefFoundError ncde) {
-            throw new RuntimeException("Falta la librería nativa requerida por Smile (OpenBLAS). Añade `implementation(\"org.bytedeco:openblas-platform:0.3.21-1.5.8\")` en `build.gradle.kts` y reconstruye.", ncde);
-        } catch (Throwable t) {
-            throw new RuntimeException("Error al entrenar/predict con Smile: " + t.getMessage(), t);
+                if (seen % ROLLING_RESYNC_INTERVAL == 0) {
+                    accumulator.reset();
+                    for (int i = 0; i < Math.min(seen, window); i++) {
+                        accumulator.add(windowX[i], windowY[i]);
+                    }
+                }
+
+                if (seen >= window) {
+                    LocalDate startDate = windowDates[(int) (seen % window)];
+                    points.add(rollingPoint(startDate, windowDates[slot], accumulator));
+                }
+            }
+        }
+
+        if (seen < window) {
+            throw new RuntimeException("El producto tiene " + seen + " registros; se necesitan al menos " + window + " para una ventana de ese tamaño.");
         }
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("product_id", productId);
+        result.put("window", window);
+        result.put("total_records", seen);
+        result.put("points", points);
+        return result;
+    }
+
+    private Map<String, Object> rollingPoint(LocalDate startDate, LocalDate endDate, BivariateAccumulator accumulator) {
+        Map<String, Object> point = new HashMap<>();
+        point.put("start_date", startDate);
+        point.put("end_date", endDate);
+
+        double r = accumulator.correlation();
+        point.put("correlation_coefficient", Double.isNaN(r) ? null : r);
+        try {
+            RegressionModel model = accumulator.toModel();
+            point.put("slope", model.slope());
+            point.put("intercept", model.intercept());
+            point.put("r_squared", model.rSquared());
+        } catch (RuntimeException e) {
+            // Ventana sin variación en la inversión: no hay recta que ajustar
+            point.put("slope", null);
+            point.put("intercept", null);
+            point.put("r_squared", null);
+        }
+        return point;
+    }
+
+    // OPTIMIZACIÓN: OLS en forma cerrada a partir de los estadísticos suficientes del producto
+    // (una lectura por clave primaria, sin cargar List<Metric> ni construir un DataFrame de Smile)
+    private RegressionModel trainModel(Long productId) {
+        return trainModel(statisticsService.findByProduct(productId));
+    }
+
+    private RegressionModel trainModel(SufficientStatistics stats) {
+        // CAMBIO: Se requieren al menos 3 puntos para que el modelo OLS sea "sobredeterminado".
+        if (stats.count() < 3) {
+            throw new RuntimeException("Se necesitan al menos 3 registros históricos para una predicción fiable.");
+        }
+
+        return stats.toModel();
     }
 
     // RF-08: Simulación de Montecarlo
     public Map<String, Object> analyzeRisk(Long productId) {
+        return analyzeRisk(productId, DEFAULT_RISK_ITERATIONS);
+    }
+
+    public Map<String, Object> analyzeRisk(Long productId, long iterations) {
+        return analyzeRisk(productId, iterations, null);
+    }
+
+    // OPTIMIZACIÓN: Número de iteraciones configurable y simulación repartida entre todos los núcleos (fork/join)
+    // Con semilla el resultado es reproducible y se guarda en caché por (producto, precio, costo, iteraciones, semilla)
+    public Map<String, Object> analyzeRisk(Long productId, long iterations, Long seed) {
+        validateRiskIterations(iterations);
+
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
 
         double basePrice = product.getPrice();
         double baseCost = product.getCost();
 
-        int iterations = 10000;
-        int profitableScenarios = 0;
-        int lossScenarios = 0;
-        Random random = new Random();
-
-        for (int i = 0; i < iterations; i++) {
-            // Variación aleatoria del ±15%
-            double priceVariation = 0.85 + (1.15 - 0.85) * random.nextDouble();
-            double costVariation = 0.85 + (1.15 - 0.85) * random.nextDouble();
-
-            double simulatedPrice = basePrice * priceVariation;
-            double simulatedCost = baseCost * costVariation;
-
-            if ((simulatedPrice - simulatedCost) > 0) {
-                profitableScenarios++;
-            } else {
-                lossScenarios++;
-            }
+        // Variación aleatoria del ±15% en precio y costo, con un generador independiente por hilo
+        RiskSimulationResult simulation;
+        if (seed == null) {
+            simulation = MonteCarloRiskSimulator.simulate(basePrice, baseCost, iterations, new SplittableRandom(), riskKernel);
+        } else {
+            RiskSimulationCache.Key key = new RiskSimulationCache.Key(productId, basePrice, baseCost, iterations, seed);
+            simulation = riskCache.get(key, () ->
+                    MonteCarloRiskSimulator.simulate(basePrice, baseCost, iterations, new SplittableRandom(seed), riskKernel));
         }
 
         Map<String, Object> response = new HashMap<>();
-        response.put("profitable_scenarios", profitableScenarios);
-        response.put("loss_scenarios", lossScenarios);
-        response.put("total_simulations", iterations);
+        response.put("profitable_scenarios", simulation.profitable());
+        response.put("loss_scenarios", simulation.loss());
+        response.put("total_simulations", simulation.total());
+        response.put("kernel", riskKernel.name());
+        response.put("seed", seed);
+
+        // Distribución del margen unitario (precio - costo) calculada en streaming durante la simulación
+        response.put("mean_margin", simulation.meanMargin());
+        response.put("margin_variance", simulation.marginVariance());
+        response.put("margin_std_dev", Math.sqrt(simulation.marginVariance()));
+        response.put("margin_p5", simulation.marginP5());
+        response.put("margin_p50", simulation.marginP50());
+        response.put("margin_p95", simulation.marginP95());
+        response.put("expected_loss", simulation.expectedLoss());
+        response.put("margin_histogram", simulation.histogram());
 
         return response;
     }
 
+    /**
+     * Simulaciones de riesgo de varios productos (reporte de riesgo por lotes).
+     * OPTIMIZACIÓN: Un producto por tarea repartidas entre todos los núcleos; cada producto usa su propio
+     * generador con la misma semilla, así que el resultado coincide con analyzeRisk del producto con esa semilla.
+     * No pasa por la caché LRU: un catálogo completo la vaciaría y resimular es barato.
+     */
+    public RiskSimulationResult[] simulateRiskBatch(List<Product> products, long iterations, long seed) {
+        validateRiskIterations(iterations);
+
+        RiskSimulationResult[] results = new RiskSimulationResult[products.size()];
+        IntStream.range(0, products.size()).parallel().forEach(i -> {
+            Product product = products.get(i);
+            results[i] = MonteCarloRiskSimulator.simulate(product.getPrice(), product.getCost(), iterations,
+                    new SplittableRandom(seed), riskKernel);
+        });
+        return results;
+    }
+
+    private void validateRiskIterations(long iterations) {
+        if (iterations < 1 || iterations > MAX_RISK_ITERATIONS) {
+            throw new RuntimeException("El número de iteraciones debe estar entre 1 y " + MAX_RISK_ITERATIONS + ".");
+        }
+    }
+
     /**
      * RF-Extra: Análisis de Correlación para medir el impacto de la publicidad.
      */
     public Map<String, Object> calculateCorrelation(Long productId) {
-        List<Metric> history = metricRepository.findByProductIdOrderByDateAsc(productId);
+        SufficientStatistics stats = statisticsService.findByProduct(productId);
 
-        if (history.size() < 2) {
+        if (stats.count() < 2) {
             throw new RuntimeException("Se necesitan al menos 2 registros históricos para calcular correlación.");
         }
 
-        // Convertimos a arrays para la librería Smile
-        double[] adSpend = history.stream().mapToDouble(Metric::getAdSpend).toArray();
-        double[] salesUnits = history.stream().mapToDouble(Metric::getSalesUnits).toArray();
+        // Fórmula de Pearson (r) en O(1) con las sumas acumuladas
+        double r = stats.correlation();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("correlation_coefficient", r);
+        result.put("interpretation", interpretCorrelation(r));
 
-        // Fórmula de Pearson (r) usando Smile
-        double r = smile.math.MathEx.cor(adSpend, salesUnits);
+        return result;
+    }
 
-        // Interpretación detallada del coeficiente
+    // Interpretación detallada del coeficiente de Pearson
+    static String interpretCorrelation(double r) {
         String interpretation;
 
         if (r >= 0.7) {
@@ -139,10 +415,6 @@ public class PredictionService {
             interpretation = "Relación Inversa Crítica. (Alerta: La publicidad está afectando negativamente las ventas)";
         }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("correlation_coefficient", r);
-        result.put("interpretation", interpretation);
-
-        return result;
+        return interpretation;
     }
 }
@@ -5,15 +5,21 @@ import com.dark.dss.repository.ProductRepository;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
 public class ProductService {
 
     private final ProductRepository productRepository;
+    private final RiskSimulationCache riskCache;
+    private final ClientReportCache clientReportCache;
 
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository, RiskSimulationCache riskCache,
+                          ClientReportCache clientReportCache) {
         this.productRepository = productRepository;
+        this.riskCache = riskCache;
+        this.clientReportCache = clientReportCache;
     }
 
     // Listar todos
@@ -39,7 +45,10 @@ public class ProductService {
         if (existing.isPresent()) {
             throw new RuntimeException("El ASIN " + product.getAsin() + " ya está registrado.");
         }
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        // El fragmento del reporte del cliente debe incluir el producto nuevo
+        clientReportCache.markClientDirty(saved.getClient() != null ? saved.getClient().getId() : null);
+        return saved;
     }
 
     // Actualizar
@@ -52,6 +61,11 @@ public class ProductService {
             throw new RuntimeException("El ASIN " + details.getAsin() + " ya pertenece a otro producto.");
         }
 
+        // Un cambio de precio o costo invalida las simulaciones de riesgo guardadas del producto
+        if (!Objects.equals(product.getPrice(), details.getPrice()) || !Objects.equals(product.getCost(), details.getCost())) {
+            riskCache.evictProduct(id);
+        }
+
         product.setAsin(details.getAsin());
         product.setName(details.getName());
         product.setPrice(details.getPrice());
@@ -62,11 +76,17 @@ public class ProductService {
             product.setClient(details.getClient());
         }
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        // Fragmento del cliente anterior (resuelto por producto) y del actual
+        clientReportCache.markProductDirty(id);
+        clientReportCache.markClientDirty(saved.getClient() != null ? saved.getClient().getId() : null);
+        return saved;
     }
 
     // Eliminar
     public void delete(Long id) {
         productRepository.deleteById(id);
+        riskCache.evictProduct(id);
+        clientReportCache.markProductDirty(id);
     }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.dark.dss.service;
+
+import com.dark.dss.analytics.SufficientStatistics;
+import com.dark.dss.entity.Metric;
+import com.dark.dss.entity.ProductStatistics;
+import com.dark.dss.repository.ProductStatisticsRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Mantiene la fila de estadísticos suficientes (n, Σx, Σy, Σxy, Σx², Σy²) de cada producto.
+ * MetricService aplica un delta por cada alta, modificación o baja de métricas, de modo que
+ * PredictionService responde predicciones y correlaciones sin leer el historial completo.
+ */
+@Service
+public class ProductStatisticsService {
+
+    private final ProductStatisticsRepository statisticsRepository;
+    private final boolean rebuildOnStartup;
+
+    public ProductStatisticsService(ProductStatisticsRepository statisticsRepository,
+                                    @Value("${dss.statistics.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.statisticsRepository = statisticsRepository;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    // Obtener las sumas del producto (solo lectura: sin fila, el producto aún no tiene métricas).
+    // Las filas se crean en la ruta de escritura (applyDelta) o en la reconstrucción al iniciar; reconstruirlas
+    // aquí competiría con los deltas concurrentes de MetricService y podría contar un delta dos veces o perderlo.
+    @Transactional(readOnly = true)
+    public SufficientStatistics findByProduct(Long productId) {
+        return statisticsRepository.findById(productId)
+                .map(ProductStatisticsService::toStatistics)
+                .orElseGet(SufficientStatistics::new);
+    }
+
+    // OPTIMIZACIÓN: Obtener las sumas de varios productos con una sola consulta (predicción por lotes)
+    @Transactional(readOnly = true)
+    public Map<Long, SufficientStatistics> findByProducts(Collection<Long> productIds) {
+        Map<Long, SufficientStatistics> result = new HashMap<>();
+        for (ProductStatistics row : statisticsRepository.findAllById(productIds)) {
+            result.put(row.getProductId(), toStatistics(row));
+        }
+        for (Long productId : productIds) {
+            result.putIfAbsent(productId, new SufficientStatistics());
+        }
+        return result;
+    }
+
+    // Sumas de todos los productos (análisis de portafolio)
+    public Map<Long, SufficientStatistics> findAll() {
+        Map<Long, SufficientStatistics> result = new HashMap<>();
+        for (ProductStatistics row : statisticsRepository.findAll()) {
+            result.put(row.getProductId(), toStatistics(row));
+        }
+        return result;
+    }
+
+    // Registrar una métrica nueva
+    public void recordAdded(Metric metric) {
+        SufficientStatistics delta = new SufficientStatistics();
+        delta.add(metric.getAdSpend(), metric.getSalesUnits());
+        apply(metric.getProduct().getId(), delta);
+    }
+
+    // Registrar una métrica eliminada (o los valores anteriores de una actualización)
+    public void recordRemoved(Long productId, double adSpend, double salesUnits) {
+        SufficientStatistics delta = new SufficientStatistics();
+        delta.remove(adSpend, salesUnits);
+        apply(productId, delta);
+    }
+
+    // Aplicar deltas acumulados por producto (carga masiva: una sentencia por producto, no por fila)
+    public void applyAll(Map<Long, SufficientStatistics> deltasByProduct) {
+        deltasByProduct.forEach(this::apply);
+    }
+
+    public void apply(Long productId, SufficientStatistics delta) {
+        if (delta.isEmpty()) return;
+        statisticsRepository.applyDelta(productId, delta.count(), delta.sumX(), delta.sumY(),
+                delta.sumXY(), delta.sumXX(), delta.sumYY());
+    }
+
+    // Reconstrucción completa al arrancar: inicializa datos previos y corrige cualquier deriva acumulada
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void rebuildOnStartup() {
+        if (!rebuildOnStartup) return;
+
+        long start = System.currentTimeMillis();
+        int rebuilt = statisticsRepository.rebuildAll();
+        int removed = statisticsRepository.deleteOrphans();
+        System.out.println("Estadísticos de regresión reconstruidos: " + rebuilt + " productos (" + removed
+                + " filas huérfanas eliminadas) en " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    static SufficientStatistics toStatistics(ProductStatistics row) {
+        return new SufficientStatistics(row.getSampleCount(), row.getSumX(), row.getSumY(),
+                row.getSumXy(), row.getSumXx(), row.getSumYy());
+    }
+}
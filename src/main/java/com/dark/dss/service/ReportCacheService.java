@@ -0,0 +1,185 @@
+package com.dark.dss.service;
+
+import com.dark.dss.repository.ClientRepository;
+import com.dark.dss.repository.ProductRepository;
+import com.dark.dss.repository.ProductStatisticsRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Caché en disco de los reportes globales (PDF de predicciones y Excel de métricas) indexada por versión de datos.
+ * La versión se arma con agregados baratos por tabla: suma de versiones de product_statistics (cada alta, cambio
+ * o baja de métricas la incrementa) y cantidad, id máximo y última modificación de productos y clientes.
+ * El ETag es el SHA-256 de esa versión: se conoce antes de generar el reporte, así que la respuesta puede
+ * seguir escribiéndose en streaming y una solicitud con If-None-Match vigente se resuelve con un 304.
+ */
+@Service
+public class ReportCacheService {
+
+    public enum CachedReport {
+        PREDICTION_PDF("prediction-pdf", ".pdf", true),
+        METRICS_EXCEL("metrics-excel", ".xlsx", false);
+
+        private final String code;
+        private final String extension;
+        private final boolean usesClients;
+
+        CachedReport(String code, String extension, boolean usesClients) {
+            this.code = code;
+            this.extension = extension;
+            this.usesClients = usesClients;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ReportWriter {
+        void write(OutputStream out) throws Exception;
+    }
+
+    private final ProductStatisticsRepository statisticsRepository;
+    private final ProductRepository productRepository;
+    private final ClientRepository clientRepository;
+    private final Path cacheDir;
+
+    public ReportCacheService(ProductStatisticsRepository statisticsRepository,
+                              ProductRepository productRepository,
+                              ClientRepository clientRepository,
+                              @Value("${dss.reports.cache.dir:${java.io.tmpdir}/dss-report-cache}") String cacheDir) throws IOException {
+        this.statisticsRepository = statisticsRepository;
+        this.productRepository = productRepository;
+        this.clientRepository = clientRepository;
+        this.cacheDir = Files.createDirectories(Path.of(cacheDir));
+    }
+
+    // ETag fuerte (entre comillas) de la versión actual de los datos del reporte
+    public String currentETag(CachedReport report) {
+        StringBuilder version = new StringBuilder(report.code)
+                .append("|metrics=").append(versionOf(statisticsRepository.findDataVersion()))
+                .append("|products=").append(versionOf(productRepository.findDataVersion()));
+        if (report.usesClients) {
+            version.append("|clients=").append(versionOf(clientRepository.findDataVersion()));
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(version.toString().getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static String versionOf(List<Object[]> rows) {
+        return rows.isEmpty() ? "" : Arrays.toString(rows.get(0));
+    }
+
+    // If-None-Match admite una lista de ETags, prefijos débiles (W/) y el comodín *
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) value = value.substring(2);
+            if (value.equals("*") || value.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Abre el reporte guardado para ese ETag, o devuelve null si no está en caché.
+     * El archivo se abre de inmediato para que siga legible aunque una versión más nueva lo reemplace.
+     */
+    public InputStream openCached(CachedReport report, String etag) throws IOException {
+        try {
+            return Files.newInputStream(fileFor(report, etag));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Genera el reporte en `out` y, a la vez, en un archivo temporal. Si los datos no cambiaron durante la
+     * generación, el archivo pasa a ser la copia en caché de ese ETag y se eliminan las versiones anteriores.
+     */
+    public void renderAndStore(CachedReport report, String etag, OutputStream out, ReportWriter writer) throws Exception {
+        Path partial = Files.createTempFile(cacheDir, report.code + "-", ".part");
+        boolean stored = false;
+        try {
+            try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(partial))) {
+                writer.write(tee(out, file));
+            }
+
+            if (etag.equals(currentETag(report))) {
+                Files.move(partial, fileFor(report, etag), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                stored = true;
+                deleteOtherVersions(report, etag);
+            }
+        } finally {
+            if (!stored) deleteQuietly(partial);
+        }
+    }
+
+    private Path fileFor(CachedReport report, String etag) {
+        return cacheDir.resolve(report.code + "-" + etag.replace("\"", "") + report.extension);
+    }
+
+    private void deleteOtherVersions(CachedReport report, String etag) throws IOException {
+        Path current = fileFor(report, etag);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(cacheDir, report.code + "-*" + report.extension)) {
+            for (Path file : files) {
+                if (!file.equals(current)) deleteQuietly(file);
+            }
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Un archivo huérfano no afecta las respuestas: se sobrescribe o elimina en la siguiente versión
+        }
+    }
+
+    // Duplica la escritura hacia la respuesta y hacia el archivo de caché; cerrar el tee no cierra la respuesta
+    private static OutputStream tee(OutputStream response, OutputStream file) {
+        return new FilterOutputStream(response) {
+            @Override
+            public void write(int b) throws IOException {
+                response.write(b);
+                file.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                response.write(b, off, len);
+                file.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                response.flush();
+                file.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+    }
+}
@@ -0,0 +1,89 @@
+package com.dark.dss.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Consultas independientes de los reportes ejecutadas a la vez sobre hilos virtuales.
+ * Cada consulta tiene su propio tiempo máximo, contado desde que se lanza; quien la espera cancela las demás
+ * si una falla o se agota (ver ReportService.buildSnapshots).
+ * Las consultas pasan por un semáforo para no acaparar el pool de conexiones. Quien las lanza no debe tener una
+ * transacción abierta: esperaría con una conexión tomada mientras las consultas piden otras al mismo pool.
+ */
+@Component
+public class ReportFanOut {
+
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("report-task-", 0).factory());
+    private final Semaphore dbPermits;
+    private final long timeoutMs;
+
+    public ReportFanOut(@Value("${dss.reports.fanout.db-concurrency:4}") int dbConcurrency,
+                        @Value("${dss.reports.fanout.timeout-ms:30000}") long timeoutMs) {
+        this.dbPermits = new Semaphore(dbConcurrency, true);
+        this.timeoutMs = timeoutMs;
+    }
+
+    // Lanzar una consulta a la base de datos; espera un permiso del semáforo antes de ejecutarse
+    public <T> Query<T> submit(String name, Callable<T> query) {
+        Future<T> future = executor.submit(() -> {
+            dbPermits.acquire();
+            try {
+                return query.call();
+            } finally {
+                dbPermits.release();
+            }
+        });
+        return new Query<>(name, future, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs));
+    }
+
+    public final class Query<T> {
+
+        private final String name;
+        private final Future<T> future;
+        private final long deadline;
+
+        private Query(String name, Future<T> future, long deadline) {
+            this.name = name;
+            this.future = future;
+            this.deadline = deadline;
+        }
+
+        // Esperar el resultado hasta el tiempo máximo de esta consulta; si falla o se agota, se cancela
+        public T await() {
+            try {
+                return future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                cancel();
+                throw new RuntimeException("La consulta de " + name + " excedió el tiempo máximo de " + timeoutMs + " ms.");
+            } catch (InterruptedException e) {
+                cancel();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("La generación del reporte fue cancelada.");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException runtime) throw runtime;
+                throw new RuntimeException("Error en la consulta de " + name + ": " + cause.getMessage(), cause);
+            }
+        }
+
+        public void cancel() {
+            future.cancel(true);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
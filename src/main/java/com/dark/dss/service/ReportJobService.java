@@ -0,0 +1,260 @@
+package com.dark.dss.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cola de trabajos de reportes: la solicitud devuelve un ID de trabajo de inmediato, un pool acotado de hilos
+ * genera el archivo en disco y el cliente consulta el estado hasta descargarlo.
+ * Solicitudes idénticas mientras un trabajo está pendiente o en curso se unen a ese mismo trabajo.
+ * Los archivos terminados se conservan durante el tiempo de retención configurado.
+ * El PDF de predicciones y el Excel de métricas pasan por ReportCacheService igual que las descargas directas:
+ * si los datos no cambiaron, el trabajo copia la versión en caché en lugar de volver a generarla.
+ */
+@Service
+public class ReportJobService {
+
+    public enum JobStatus { PENDING, RUNNING, COMPLETED, FAILED }
+
+    // Tipos de reporte que admite la cola
+    public enum ReportType {
+        PREDICTION_PDF("prediction-pdf", "predicciones_global_line.pdf", "application/pdf"),
+        METRICS_EXCEL("metrics-excel", "historico_metricas.xlsx", "application/octet-stream"),
+        RISK_PDF("risk-pdf", "reporte_riesgo.pdf", "application/pdf");
+
+        private final String code;
+        private final String fileName;
+        private final String contentType;
+
+        ReportType(String code, String fileName, String contentType) {
+            this.code = code;
+            this.fileName = fileName;
+            this.contentType = contentType;
+        }
+
+        public String code() {
+            return code;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public static ReportType fromCode(String code) {
+            for (ReportType type : values()) {
+                if (type.code.equalsIgnoreCase(code)) return type;
+            }
+            throw new RuntimeException("Tipo de reporte no soportado: " + code + ". Use prediction-pdf, metrics-excel o risk-pdf.");
+        }
+    }
+
+    public static final class ReportJob {
+        private final String id;
+        private final String key;
+        private final ReportType type;
+        private final Long productId;
+        private final LocalDateTime createdAt = LocalDateTime.now();
+        private volatile JobStatus status = JobStatus.PENDING;
+        private volatile LocalDateTime finishedAt;
+        private volatile Path file;
+        private volatile String error;
+
+        ReportJob(String id, String key, ReportType type, Long productId) {
+            this.id = id;
+            this.key = key;
+            this.type = type;
+            this.productId = productId;
+        }
+
+        public String id() {
+            return id;
+        }
+
+        public JobStatus status() {
+            return status;
+        }
+
+        public ReportType type() {
+            return type;
+        }
+
+        public Path file() {
+            return file;
+        }
+
+        public String fileName() {
+            return type == ReportType.RISK_PDF ? "reporte_riesgo_" + productId + ".pdf" : type.fileName;
+        }
+    }
+
+    private final ReportService reportService;
+    private final ReportCacheService reportCacheService;
+    private final Path storageDir;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+
+    private final Map<String, ReportJob> jobs = new ConcurrentHashMap<>();
+    // Trabajo pendiente o en curso por tipo de reporte (deduplicación de solicitudes idénticas)
+    private final Map<String, ReportJob> activeByKey = new ConcurrentHashMap<>();
+
+    public ReportJobService(ReportService reportService,
+                            ReportCacheService reportCacheService,
+                            @Value("${dss.reports.jobs.dir:${java.io.tmpdir}/dss-reports}") String storageDir,
+                            @Value("${dss.reports.jobs.workers:2}") int workers,
+                            @Value("${dss.reports.jobs.queue-capacity:20}") int queueCapacity,
+                            @Value("${dss.reports.jobs.retention-minutes:60}") long retentionMinutes) throws IOException {
+        this.reportService = reportService;
+        this.reportCacheService = reportCacheService;
+        this.storageDir = Files.createDirectories(Path.of(storageDir));
+        this.retention = Duration.ofMinutes(retentionMinutes);
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "report-job-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    // Encolar un reporte; si ya hay uno idéntico pendiente o en curso se devuelve ese mismo trabajo
+    public ReportJob submit(ReportType type, Long productId) {
+        if (type == ReportType.RISK_PDF && productId == null) {
+            throw new RuntimeException("El reporte de riesgo requiere productId.");
+        }
+        String key = type == ReportType.RISK_PDF ? type.code + ":" + productId : type.code;
+
+        boolean[] created = {false};
+        ReportJob job = activeByKey.computeIfAbsent(key, k -> {
+            created[0] = true;
+            ReportJob newJob = new ReportJob(UUID.randomUUID().toString(), k, type, type == ReportType.RISK_PDF ? productId : null);
+            jobs.put(newJob.id, newJob);
+            return newJob;
+        });
+
+        if (created[0]) {
+            try {
+                executor.execute(() -> run(job));
+            } catch (RejectedExecutionException e) {
+                activeByKey.remove(key, job);
+                jobs.remove(job.id);
+                throw new RuntimeException("La cola de reportes está llena; intente de nuevo en unos minutos.");
+            }
+        }
+        return job;
+    }
+
+    public ReportJob find(String jobId) {
+        ReportJob job = jobs.get(jobId);
+        if (job == null) {
+            throw new RuntimeException("Trabajo de reporte no encontrado: " + jobId);
+        }
+        return job;
+    }
+
+    public Map<String, Object> toResponse(ReportJob job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("job_id", job.id);
+        response.put("type", job.type.code);
+        response.put("product_id", job.productId);
+        response.put("status", job.status);
+        response.put("created_at", job.createdAt);
+        response.put("finished_at", job.finishedAt);
+        response.put("error", job.error);
+        response.put("file_url", job.status == JobStatus.COMPLETED ? "/api/reports/jobs/" + job.id + "/file" : null);
+        return response;
+    }
+
+    private void run(ReportJob job) {
+        job.status = JobStatus.RUNNING;
+        long start = System.currentTimeMillis();
+        Path partial = storageDir.resolve(job.id + ".part");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial))) {
+                render(job, out);
+            }
+            // El archivo solo aparece con su nombre final cuando está completo
+            Path target = storageDir.resolve(job.id + "-" + job.fileName());
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.file = target;
+            job.status = JobStatus.COMPLETED;
+            System.out.println("Reporte " + job.key + " (" + job.id + ") generado en " + (System.currentTimeMillis() - start) + " ms");
+        } catch (Exception e) {
+            job.error = e.getMessage() != null ? e.getMessage() : e.toString();
+            job.status = JobStatus.FAILED;
+            deleteQuietly(partial);
+        } finally {
+            job.finishedAt = LocalDateTime.now();
+            activeByKey.remove(job.key, job);
+        }
+    }
+
+    private void render(ReportJob job, OutputStream out) throws Exception {
+        switch (job.type) {
+            case PREDICTION_PDF -> renderCached(ReportCacheService.CachedReport.PREDICTION_PDF, out,
+                    reportService::writePredictionPdf);
+            case METRICS_EXCEL -> renderCached(ReportCacheService.CachedReport.METRICS_EXCEL, out,
+                    reportService::writeMetricsExcel);
+            case RISK_PDF -> reportService.writeRiskPdf(reportService.prepareRiskReport(job.productId), out);
+        }
+    }
+
+    // Copia de la versión en caché para el ETag actual o, si no existe, generación que además la guarda
+    private void renderCached(ReportCacheService.CachedReport report, OutputStream out,
+                              ReportCacheService.ReportWriter writer) throws Exception {
+        String etag = reportCacheService.currentETag(report);
+        try (InputStream cached = reportCacheService.openCached(report, etag)) {
+            if (cached != null) {
+                cached.transferTo(out);
+                return;
+            }
+        }
+        reportCacheService.renderAndStore(report, etag, out, writer);
+    }
+
+    // Eliminar trabajos terminados (y sus archivos) que superaron el tiempo de retención
+    @Scheduled(fixedDelayString = "${dss.reports.jobs.cleanup-interval-ms:300000}")
+    public void purgeExpired() {
+        LocalDateTime limit = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            if (job.finishedAt == null || job.finishedAt.isAfter(limit)) return false;
+            if (job.file != null) deleteQuietly(job.file);
+            return true;
+        });
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // Se reintenta en la siguiente limpieza o al reiniciar
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
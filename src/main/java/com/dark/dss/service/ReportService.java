@@ -1,8 +1,15 @@
 package com.dark.dss.service;
 
-import com.dark.dss.entity.Metric;
+import com.dark.dss.analytics.RegressionModel;
+import com.dark.dss.analytics.RiskSimulationResult;
+import com.dark.dss.analytics.SufficientStatistics;
+import com.dark.dss.dto.MetricExportRow;
+import com.dark.dss.entity.Client;
 import com.dark.dss.entity.Product;
+import com.dark.dss.entity.ProductForecast;
+import com.dark.dss.repository.ClientRepository;
 import com.dark.dss.repository.MetricRepository;
+import com.dark.dss.repository.ProductForecastRepository;
 import com.dark.dss.repository.ProductRepository;
 import com.lowagie.text.*; // OpenPDF
 import com.lowagie.text.Font;
@@ -12,38 +19,268 @@ import com.lowagie.text.pdf.PdfWriter;
 import org.apache.poi.ss.usermodel.*; // Apache POI
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.stream.Stream;
 
 @Service
 public class ReportService {
 
+    // Filas de una tabla PDF que se acumulan antes de escribirlas al documento
+    private static final int PDF_TABLE_FLUSH_ROWS = 200;
+
+    // Filas del Excel de métricas que SXSSF conserva en memoria antes de volcarlas a disco
+    private static final int EXCEL_ROW_WINDOW = 500;
+
+    private static final String[] METRICS_EXCEL_COLUMNS =
+            {"ID Métrica", "Nombre Producto", "Producto (ASIN)", "Fecha", "Unidades Vendidas", "Inversión Ads", "Ingresos"};
+    // Anchos precalculados en caracteres (equivalentes a los de autoSizeColumn con datos típicos)
+    private static final int[] METRICS_EXCEL_WIDTHS = {12, 40, 16, 12, 18, 15, 15};
+
     private final ProductRepository productRepository;
     private final MetricRepository metricRepository;
     private final PredictionService predictionService;
+    private final ProductStatisticsService statisticsService;
+    private final PredictionModelCache modelCache;
+    private final ReportFanOut fanOut;
+    private final ClientRepository clientRepository;
+    private final ClientReportCache clientReportCache;
+    private final ProductForecastRepository forecastRepository;
 
     public ReportService(ProductRepository productRepository,
                          MetricRepository metricRepository,
-                         PredictionService predictionService) {
+                         PredictionService predictionService,
+                         ProductStatisticsService statisticsService,
+                         PredictionModelCache modelCache,
+                         ReportFanOut fanOut,
+                         ClientRepository clientRepository,
+                         ClientReportCache clientReportCache,
+                         ProductForecastRepository forecastRepository) {
         this.productRepository = productRepository;
         this.metricRepository = metricRepository;
         this.predictionService = predictionService;
+        this.statisticsService = statisticsService;
+        this.modelCache = modelCache;
+        this.fanOut = fanOut;
+        this.clientRepository = clientRepository;
+        this.clientReportCache = clientReportCache;
+        this.forecastRepository = forecastRepository;
+    }
+
+    // Predicción estándar ($1,000 en publicidad) de un producto, calculada una sola vez por reporte.
+    // predictedUnits es null cuando el producto no tiene datos suficientes para ajustar el modelo.
+    record ProductPrediction(Product product, Integer predictedUnits, Double accuracy,
+                             Double projectedRevenue, Double roi, Double correlation) {
+        boolean hasData() {
+            return predictedUnits != null;
+        }
+    }
+
+    // Totales de un grupo de productos (todo el portafolio o un cliente)
+    record PredictionTotals(int productsWithData, double avgAccuracy, double potentialRevenue) {
+    }
+
+    // Fragmento precalculado de un cliente (predicciones de sus productos y totales); se guarda en ClientReportCache
+    record ClientSnapshot(java.util.List<ProductPrediction> predictions, PredictionTotals totals) {
+    }
+
+    // Sección de un cliente en el reporte: nombre vigente del cliente y su fragmento
+    private record ClientSection(String clientName, ClientSnapshot snapshot) {
+    }
+
+    /**
+     * OPTIMIZACIÓN: Etapa de preparación del reporte de predicciones.
+     * Las secciones se arman con los fragmentos por cliente de ClientReportCache; solo los clientes marcados
+     * como sucios (o aún sin fragmento) se recalculan: sus productos con el cliente y sus pronósticos
+     * materializados (product_forecasts). Cada producto se resuelve una sola vez y todas las secciones del PDF leen
+     * estos mismos resultados, en lugar de consultar métricas y llamar a predictSales por producto en cada sección.
+     */
+    private java.util.List<ClientSection> assemblePredictionReport() {
+        java.util.List<Client> clients = clientRepository.findAll(Sort.by("id"));
+
+        Map<Long, ClientSnapshot> snapshots = new HashMap<>();
+        Map<Long, Long> dirtyGenerations = new LinkedHashMap<>();
+        for (Client client : clients) {
+            ClientSnapshot snapshot = clientReportCache.get(client.getId());
+            if (snapshot != null) {
+                snapshots.put(client.getId(), snapshot);
+            } else {
+                dirtyGenerations.put(client.getId(), clientReportCache.generation(client.getId()));
+            }
+        }
+        if (!dirtyGenerations.isEmpty()) {
+            snapshots.putAll(buildSnapshots(dirtyGenerations, dirtyGenerations.size() == clients.size()));
+            System.out.println("Reporte de predicciones: " + dirtyGenerations.size() + " de " + clients.size()
+                    + " clientes recalculados; el resto desde fragmentos en caché");
+        }
+
+        java.util.List<ClientSection> sections = new ArrayList<>();
+        for (Client client : clients) {
+            ClientSnapshot snapshot = snapshots.get(client.getId());
+            // Los clientes sin productos no aparecen en el reporte
+            if (snapshot != null && !snapshot.predictions().isEmpty()) {
+                sections.add(new ClientSection(client.getName(), snapshot));
+            }
+        }
+        return sections;
+    }
+
+    /**
+     * Recalcular los fragmentos de los clientes sucios (todos en el primer reporte).
+     * Las predicciones salen de product_forecasts (pronóstico estándar que materializa ForecastService); solo los
+     * productos cuyo pronóstico falta o quedó desactualizado (sumas con otra versión) se ajustan aquí, con una
+     * lectura adicional de sus sumas por clave primaria.
+     * OPTIMIZACIÓN: Productos y pronósticos se consultan a la vez en hilos virtuales (ReportFanOut), así que la
+     * espera es la de la consulta más lenta y no la suma; si una falla, agota su tiempo o se cancela la
+     * petición, la otra se cancela. Este hilo no tiene transacción abierta mientras espera (ver writePredictionPdf).
+     */
+    private Map<Long, ClientSnapshot> buildSnapshots(Map<Long, Long> generations, boolean allClients) {
+        java.util.List<Product> products;
+        Map<Long, ProductForecast> forecastByProduct = new HashMap<>();
+        ReportFanOut.Query<java.util.List<Product>> productsQuery = allClients
+                ? fanOut.submit("productos", productRepository::findAllWithClient)
+                : fanOut.submit("productos", () -> productRepository.findByClientIdsWithClient(generations.keySet()));
+        ReportFanOut.Query<java.util.List<ProductForecast>> forecastsQuery = allClients
+                ? fanOut.submit("pronósticos", forecastRepository::findAllCurrent)
+                : fanOut.submit("pronósticos", () -> forecastRepository.findCurrentByClientIds(generations.keySet()));
+        try {
+            products = productsQuery.await();
+            forecastsQuery.await().forEach(forecast -> forecastByProduct.put(forecast.getProductId(), forecast));
+        } finally {
+            productsQuery.cancel();
+            forecastsQuery.cancel();
+        }
+
+        // Respaldo: sumas de los productos sin pronóstico vigente (nuevos o con métricas cambiadas desde el último job)
+        java.util.List<Long> unforecast = new ArrayList<>();
+        for (Product product : products) {
+            if (!forecastByProduct.containsKey(product.getId())) {
+                unforecast.add(product.getId());
+            }
+        }
+        Map<Long, SufficientStatistics> statsByProduct = unforecast.isEmpty()
+                ? Map.of()
+                : statisticsService.findByProducts(unforecast);
+
+        Map<Long, java.util.List<ProductPrediction>> predictionsByClient = new HashMap<>();
+        for (Long clientId : generations.keySet()) {
+            predictionsByClient.put(clientId, new ArrayList<>());
+        }
+        for (Product product : products) {
+            // Productos de clientes creados después de leer la lista de clientes quedan para el siguiente reporte
+            java.util.List<ProductPrediction> clientPredictions = predictionsByClient.get(product.getClient().getId());
+            if (clientPredictions != null) {
+                ProductForecast forecast = forecastByProduct.get(product.getId());
+                clientPredictions.add(forecast != null
+                        ? fromForecast(product, forecast)
+                        : predict(product, statsByProduct.get(product.getId())));
+            }
+        }
+
+        Map<Long, ClientSnapshot> snapshots = new HashMap<>();
+        predictionsByClient.forEach((clientId, predictions) -> {
+            ClientSnapshot snapshot = new ClientSnapshot(java.util.List.copyOf(predictions), totals(predictions));
+            clientReportCache.put(clientId, generations.get(clientId), snapshot);
+            snapshots.put(clientId, snapshot);
+        });
+        return snapshots;
+    }
+
+    // Pronóstico materializado vigente (mismo criterio que predict: sin predicción si no hay datos suficientes)
+    private ProductPrediction fromForecast(Product product, ProductForecast forecast) {
+        if (forecast.getPredictedUnits() == null) {
+            return new ProductPrediction(product, null, null, null, null, null);
+        }
+        return prediction(product, forecast.getPredictedUnits(), forecast.getModelAccuracy(), forecast.getCorrelation());
+    }
+
+    private ProductPrediction predict(Product product, SufficientStatistics stats) {
+        if (stats == null || stats.count() < 3) {
+            return new ProductPrediction(product, null, null, null, null, null);
+        }
+        try {
+            RegressionModel model = modelCache.peek(product.getId());
+            if (model == null) {
+                model = stats.toModel();
+            }
+            int predictedUnits = (int) Math.round(model.predict(ForecastService.STANDARD_AD_SPEND));
+            return prediction(product, predictedUnits, model.rSquared(), stats.correlation());
+        } catch (RuntimeException e) {
+            // Sin variación en la inversión publicitaria: no hay recta que ajustar
+            return new ProductPrediction(product, null, null, null, null, null);
+        }
+    }
+
+    private ProductPrediction prediction(Product product, int predictedUnits, double accuracy, double correlation) {
+        double projectedRevenue = predictedUnits * product.getPrice();
+        double roi = ((projectedRevenue - ForecastService.STANDARD_AD_SPEND) / ForecastService.STANDARD_AD_SPEND) * 100;
+        return new ProductPrediction(product, predictedUnits, accuracy, projectedRevenue, roi, correlation);
+    }
+
+    // Totales del portafolio a partir de los totales ya calculados de cada cliente
+    private PredictionTotals combine(java.util.List<ClientSection> sections) {
+        int productsWithData = 0;
+        double accuracySum = 0;
+        double potentialRevenue = 0;
+        for (ClientSection section : sections) {
+            PredictionTotals clientTotals = section.snapshot().totals();
+            productsWithData += clientTotals.productsWithData();
+            accuracySum += clientTotals.avgAccuracy() * clientTotals.productsWithData();
+            potentialRevenue += clientTotals.potentialRevenue();
+        }
+        return new PredictionTotals(productsWithData, productsWithData > 0 ? accuracySum / productsWithData : 0, potentialRevenue);
+    }
+
+    private PredictionTotals totals(Collection<ProductPrediction> predictions) {
+        int productsWithData = 0;
+        double accuracySum = 0;
+        double potentialRevenue = 0;
+        for (ProductPrediction prediction : predictions) {
+            if (!prediction.hasData()) continue;
+            productsWithData++;
+            accuracySum += prediction.accuracy();
+            potentialRevenue += prediction.projectedRevenue();
+        }
+        return new PredictionTotals(productsWithData, productsWithData > 0 ? accuracySum / productsWithData : 0, potentialRevenue);
+    }
+
+    // Datos del reporte de riesgo, obtenidos antes de empezar a escribir la respuesta (errores => 4xx/5xx, no un PDF truncado)
+    public record RiskReport(Product product, Map<String, Object> riskData) {
+    }
+
+    // Reporte de riesgo por lotes: productos de un cliente (o de todo el catálogo) ordenados del más riesgoso al más seguro
+    public record BatchRiskReport(String scope, long iterations, java.util.List<BatchRiskRow> rows) {
+    }
+
+    public record BatchRiskRow(Product product, RiskSimulationResult simulation) {
+        public double successRate() {
+            return simulation.total() > 0 ? (double) simulation.profitable() / simulation.total() * 100 : 0;
+        }
     }
 
     /**
      * Generar PDF profesional con análisis completo de predicciones de ventas
      * Incluye análisis de correlación, proyecciones de ROI y recomendaciones estratégicas
+     * OPTIMIZACIÓN: Se escribe directamente en el flujo de salida (respuesta HTTP) a medida que se genera,
+     * sin acumular el documento completo en memoria.
+     * Sin transacción: los datos se arman antes de abrir el documento con entidades ya cargadas (JOIN FETCH), así
+     * que no se retiene una conexión mientras se esperan las consultas paralelas ni mientras el PDF se envía.
      */
-    public byte[] generatePredictionPdf() throws DocumentException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        Document document = new Document();
-        PdfWriter.getInstance(document, out);
+    public void writePredictionPdf(OutputStream out) throws DocumentException {
+        // Momento en que se leen los datos: el PDF puede servirse desde la caché (ReportCacheService) mientras la
+        // versión de los datos no cambie, así que se imprime "datos vigentes al" y no la hora de cada descarga
+        java.time.LocalDateTime dataAsOf = java.time.LocalDateTime.now();
+        java.util.List<ClientSection> sections = assemblePredictionReport();
 
-        document.open();
+        Document document = new Document();
+        openPdf(document, out);
 
         // Estilos de fuente
         Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 20, java.awt.Color.DARK_GRAY);
@@ -52,13 +289,13 @@ public class ReportService {
         Font smallFont = FontFactory.getFont(FontFactory.HELVETICA, 10, java.awt.Color.GRAY);
 
         // 1. ENCABEZADO DEL DOCUMENTO
-        addDocumentHeader(document, titleFont, normalFont);
+        addDocumentHeader(document, dataAsOf, titleFont, normalFont);
 
         // 2. RESUMEN EJECUTIVO
-        addExecutiveSummary(document, subtitleFont, normalFont);
+        addExecutiveSummary(document, sections, subtitleFont, normalFont);
 
         // 3. ANÁLISIS DETALLADO POR PRODUCTO
-        addDetailedProductAnalysis(document, subtitleFont, normalFont);
+        addDetailedProductAnalysis(document, sections, subtitleFont, normalFont);
 
         // 4. CONCLUSIONES Y RECOMENDACIONES
         addConclusionsAndRecommendations(document, subtitleFont, normalFont);
@@ -67,10 +304,17 @@ public class ReportService {
         addFooter(document, smallFont);
 
         document.close();
-        return out.toByteArray();
     }
 
-    private void addDocumentHeader(Document document, Font titleFont, Font normalFont) throws DocumentException {
+    // El flujo pertenece al llamador (respuesta HTTP): cerrar el documento no debe cerrarlo
+    private void openPdf(Document document, OutputStream out) throws DocumentException {
+        PdfWriter writer = PdfWriter.getInstance(document, out);
+        writer.setCloseStream(false);
+        document.open();
+    }
+
+    private void addDocumentHeader(Document document, java.time.LocalDateTime dataAsOf,
+                                   Font titleFont, Font normalFont) throws DocumentException {
         // Título principal
         Paragraph title = new Paragraph("REPORTE DE ANÁLISIS PREDICTIVO", titleFont);
         title.setAlignment(Element.ALIGN_CENTER);
@@ -114,60 +358,38 @@ public class ReportService {
         Paragraph info = new Paragraph();
         info.add(new Chunk("Empresa: ", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11)));
         info.add(new Chunk("Global Line Solutions\n", normalFont));
-        info.add(new Chunk("Fecha de Generación: ", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11)));
-        info.add(new Chunk(java.time.LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) + "\n", normalFont));
+        info.add(new Chunk("Datos vigentes al: ", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11)));
+        info.add(new Chunk(dataAsOf.format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm")) + "\n", normalFont));
         info.add(new Chunk("Metodología: ", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11)));
         info.add(new Chunk("Regresión Lineal Múltiple (OLS) y Análisis de Correlación\n", normalFont));
         info.setSpacingAfter(20);
         document.add(info);
     }
 
-    private void addExecutiveSummary(Document document, Font subtitleFont, Font normalFont) throws DocumentException {
+    private void addExecutiveSummary(Document document, java.util.List<ClientSection> sections,
+                                     Font subtitleFont, Font normalFont) throws DocumentException {
         // Título de sección
         Paragraph sectionTitle = new Paragraph("RESUMEN EJECUTIVO", subtitleFont);
         sectionTitle.setSpacingBefore(10);
         sectionTitle.setSpacingAfter(10);
         document.add(sectionTitle);
 
-        // Calcular estadísticas generales y por cliente
-        java.util.List<Product> products = productRepository.findAll();
-        int totalProducts = products.size();
-        int productsWithData = 0;
-        double avgAccuracy = 0;
-        double totalPotentialRevenue = 0;
-
-        // Agrupar por cliente para estadísticas
-        Map<String, java.util.List<Product>> productsByClient = new HashMap<>();
-        for (Product product : products) {
-            String clientName = product.getClient() != null ? product.getClient().getName() : "Sin Cliente Asignado";
-            productsByClient.computeIfAbsent(clientName, k -> new ArrayList<>()).add(product);
-        }
-
-        // Calcular estadísticas globales
-        for (Product product : products) {
-            try {
-                java.util.List<Metric> metrics = metricRepository.findByProductIdOrderByDateAsc(product.getId());
-                if (metrics.size() >= 3) {
-                    productsWithData++;
-                    Map<String, Object> prediction = predictionService.predictSales(product.getId(), 1000.0);
-                    avgAccuracy += (Double) prediction.get("model_accuracy");
-
-                    int predictedUnits = (Integer) prediction.get("predicted_units");
-                    totalPotentialRevenue += predictedUnits * product.getPrice();
-                }
-            } catch (Exception ignored) {}
-        }
-
-        if (productsWithData > 0) {
-            avgAccuracy = avgAccuracy / productsWithData;
+        // Estadísticas generales a partir de los totales ya calculados de cada cliente
+        int totalProducts = 0;
+        for (ClientSection section : sections) {
+            totalProducts += section.snapshot().predictions().size();
         }
+        PredictionTotals global = combine(sections);
+        int productsWithData = global.productsWithData();
+        double avgAccuracy = global.avgAccuracy();
+        double totalPotentialRevenue = global.potentialRevenue();
 
         // Texto del resumen
         Paragraph summary = new Paragraph();
         summary.add(new Chunk("📈 ESTADÍSTICAS GENERALES\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 13, java.awt.Color.BLUE)));
         summary.add(new Chunk("🔍 Inversión estándar simulada: $1,000 MXN por producto\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11, java.awt.Color.RED)));
         summary.add(new Chunk("• Total de clientes activos: ", normalFont));
-        summary.add(new Chunk(String.valueOf(productsByClient.size()) + "\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12)));
+        summary.add(new Chunk(String.valueOf(sections.size()) + "\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12)));
         summary.add(new Chunk("• Total de productos analizados: ", normalFont));
         summary.add(new Chunk(String.valueOf(totalProducts) + "\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12)));
         summary.add(new Chunk("• Productos con datos suficientes para predicción: ", normalFont));
@@ -175,33 +397,22 @@ public class ReportService {
         summary.add(new Chunk("• Precisión promedio del modelo: ", normalFont));
         summary.add(new Chunk(String.format("%.1f%%", avgAccuracy * 100) + "\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12)));
         summary.add(new Chunk("• Inversión total simulada en publicidad: ", normalFont));
-        summary.add(new Chunk(String.format("$%.2f", productsWithData * 1000.0) + "\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, java.awt.Color.ORANGE.darker())));
+        summary.add(new Chunk(String.format("$%.2f", productsWithData * ForecastService.STANDARD_AD_SPEND) + "\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, java.awt.Color.ORANGE.darker())));
         summary.add(new Chunk("• Potencial total de ingresos proyectados: ", normalFont));
         summary.add(new Chunk(String.format("$%.2f", totalPotentialRevenue) + "\n\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12, java.awt.Color.GREEN.darker())));
 
         // Desglose por cliente
         summary.add(new Chunk("🏢 DESGLOSE POR CLIENTE (Inversión $1,000/producto)\n", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 13, java.awt.Color.BLUE)));
 
-        for (Map.Entry<String, java.util.List<Product>> entry : productsByClient.entrySet()) {
-            String clientName = entry.getKey();
-            java.util.List<Product> clientProducts = entry.getValue();
-
-            double clientRevenue = 0;
-            int clientProductsWithData = 0;
-
-            for (Product product : clientProducts) {
-                try {
-                    java.util.List<Metric> metrics = metricRepository.findByProductIdOrderByDateAsc(product.getId());
-                    if (metrics.size() >= 3) {
-                        clientProductsWithData++;
-                        Map<String, Object> prediction = predictionService.predictSales(product.getId(), 1000.0);
-                        int predictedUnits = (Integer) prediction.get("predicted_units");
-                        clientRevenue += predictedUnits * product.getPrice();
-                    }
-                } catch (Exception ignored) {}
-            }
+        for (ClientSection section : sections) {
+            String clientName = section.clientName();
+            java.util.List<ProductPrediction> clientProducts = section.snapshot().predictions();
+
+            PredictionTotals clientTotals = section.snapshot().totals();
+            double clientRevenue = clientTotals.potentialRevenue();
+            int clientProductsWithData = clientTotals.productsWithData();
 
-            double clientInvestment = clientProductsWithData * 1000.0;
+            double clientInvestment = clientProductsWithData * ForecastService.STANDARD_AD_SPEND;
             summary.add(new Chunk("• " + clientName + ": ", normalFont));
             summary.add(new Chunk(clientProducts.size() + " productos", FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11)));
             summary.add(new Chunk(" | Inversión: ", normalFont));
@@ -214,26 +425,18 @@ public class ReportService {
         document.add(summary);
     }
 
-    private void addDetailedProductAnalysis(Document document, Font subtitleFont, Font normalFont) throws DocumentException {
+    private void addDetailedProductAnalysis(Document document, java.util.List<ClientSection> sections,
+                                            Font subtitleFont, Font normalFont) throws DocumentException {
         // Título de sección
         Paragraph sectionTitle = new Paragraph("ANÁLISIS DETALLADO POR CLIENTE Y PRODUCTO", subtitleFont);
         sectionTitle.setSpacingBefore(10);
         sectionTitle.setSpacingAfter(10);
         document.add(sectionTitle);
 
-        java.util.List<Product> products = productRepository.findAll();
-
-        // Agrupar productos por cliente
-        Map<String, java.util.List<Product>> productsByClient = new HashMap<>();
-        for (Product product : products) {
-            String clientName = product.getClient() != null ? product.getClient().getName() : "Sin Cliente Asignado";
-            productsByClient.computeIfAbsent(clientName, k -> new ArrayList<>()).add(product);
-        }
-
         // Iterar por cada cliente
-        for (Map.Entry<String, java.util.List<Product>> entry : productsByClient.entrySet()) {
-            String clientName = entry.getKey();
-            java.util.List<Product> clientProducts = entry.getValue();
+        for (ClientSection section : sections) {
+            String clientName = section.clientName();
+            java.util.List<ProductPrediction> clientProducts = section.snapshot().predictions();
 
             // Título del cliente
             Font clientTitleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 16, java.awt.Color.BLUE);
@@ -243,10 +446,12 @@ public class ReportService {
             document.add(clientTitle);
 
             // Calcular resumen del cliente
-            addClientSummary(document, clientProducts, normalFont);
+            addClientSummary(document, section.snapshot(), normalFont);
 
             // Tabla de productos del cliente
+            // OPTIMIZACIÓN: Tabla incompleta (LargeElement): las filas se escriben al documento por bloques
             PdfPTable table = new PdfPTable(7); // 7 columnas
+            table.setComplete(false);
             table.setWidthPercentage(100);
             table.setWidths(new float[]{2.0f, 1.2f, 1.5f, 1.3f, 1.3f, 1.5f, 2.2f});
 
@@ -260,22 +465,21 @@ public class ReportService {
             addPdfHeader(table, "Recomendación");
 
             // Llenar datos de productos del cliente
-            for (Product product : clientProducts) {
+            int rowsInTable = 0;
+            for (ProductPrediction prediction : clientProducts) {
+                if (++rowsInTable % PDF_TABLE_FLUSH_ROWS == 0) {
+                    document.add(table);
+                }
+                Product product = prediction.product();
                 table.addCell(new Paragraph(product.getName() + "\n(" + product.getAsin() + ")", FontFactory.getFont(FontFactory.HELVETICA, 9)));
                 table.addCell("$" + String.format("%.2f", product.getPrice()));
 
-                try {
-                    Map<String, Object> prediction = predictionService.predictSales(product.getId(), 1000.0);
-                    Map<String, Object> correlation = predictionService.calculateCorrelation(product.getId());
-
-                    int predictedUnits = (Integer) prediction.get("predicted_units");
-                    double accuracy = (Double) prediction.get("model_accuracy");
-                    double projectedRevenue = predictedUnits * product.getPrice();
-                    double roi = ((projectedRevenue - 1000) / 1000) * 100;
-                    double correlationCoeff = (Double) correlation.get("correlation_coefficient");
+                if (prediction.hasData()) {
+                    double roi = prediction.roi();
+                    double accuracy = prediction.accuracy();
 
-                    table.addCell(String.valueOf(predictedUnits));
-                    table.addCell("$" + String.format("%.2f", projectedRevenue));
+                    table.addCell(String.valueOf(prediction.predictedUnits()));
+                    table.addCell("$" + String.format("%.2f", prediction.projectedRevenue()));
 
                     // ROI con colores
                     PdfPCell roiCell = new PdfPCell(new Phrase(String.format("%.1f%%", roi)));
@@ -286,11 +490,11 @@ public class ReportService {
                     table.addCell(String.format("%.3f", accuracy));
 
                     // Recomendación basada en múltiples factores
-                    String recommendation = generateRecommendation(roi, accuracy, correlationCoeff);
+                    String recommendation = generateRecommendation(roi, accuracy, prediction.correlation());
                     PdfPCell recCell = new PdfPCell(new Phrase(recommendation, FontFactory.getFont(FontFactory.HELVETICA, 8)));
                     table.addCell(recCell);
 
-                } catch (Exception e) {
+                } else {
                     table.addCell("N/A");
                     table.addCell("N/A");
                     table.addCell("N/A");
@@ -299,34 +503,19 @@ public class ReportService {
                 }
             }
 
+            table.setComplete(true);
             document.add(table);
             document.add(new Paragraph(" ")); // Espacio entre clientes
         }
     }
 
-    private void addClientSummary(Document document, java.util.List<Product> clientProducts, Font normalFont) throws DocumentException {
-        double totalPotentialRevenue = 0;
-        double totalInvestment = clientProducts.size() * 1000.0; // $1000 por producto
-        int productsWithData = 0;
-        double avgAccuracy = 0;
-
-        for (Product product : clientProducts) {
-            try {
-                java.util.List<Metric> metrics = metricRepository.findByProductIdOrderByDateAsc(product.getId());
-                if (metrics.size() >= 3) {
-                    productsWithData++;
-                    Map<String, Object> prediction = predictionService.predictSales(product.getId(), 1000.0);
-                    avgAccuracy += (Double) prediction.get("model_accuracy");
-
-                    int predictedUnits = (Integer) prediction.get("predicted_units");
-                    totalPotentialRevenue += predictedUnits * product.getPrice();
-                }
-            } catch (Exception ignored) {}
-        }
-
-        if (productsWithData > 0) {
-            avgAccuracy = avgAccuracy / productsWithData;
-        }
+    private void addClientSummary(Document document, ClientSnapshot snapshot, Font normalFont) throws DocumentException {
+        java.util.List<ProductPrediction> clientProducts = snapshot.predictions();
+        double totalInvestment = clientProducts.size() * ForecastService.STANDARD_AD_SPEND; // $1000 por producto
+        PredictionTotals clientTotals = snapshot.totals();
+        double totalPotentialRevenue = clientTotals.potentialRevenue();
+        int productsWithData = clientTotals.productsWithData();
+        double avgAccuracy = clientTotals.avgAccuracy();
 
         double totalROI = ((totalPotentialRevenue - totalInvestment) / totalInvestment) * 100;
 
@@ -446,17 +635,16 @@ public class ReportService {
     }
 
     /**
-     * Generar Excel el Histórico de Métricas
+     * Generar Excel el Histórico de Métricas (escrito directamente en el flujo de salida)
+     * OPTIMIZACIÓN: SXSSF mantiene en memoria solo las últimas EXCEL_ROW_WINDOW filas (el resto va a un temporal
+     * comprimido) y las métricas llegan por cursor ya unidas a su producto, así que la memoria es constante
+     * sin importar el número de métricas. Los anchos de columna son fijos (autoSizeColumn recorrería cada celda).
      */
-    public byte[] generateMetricsExcel() throws IOException {
-        try (Workbook workbook = new XSSFWorkbook();
-             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-
-            Sheet sheet = workbook.createSheet("Histórico de Métricas");
-
-            // 1. Encabezados en el nuevo orden
-            Row headerRow = sheet.createRow(0);
-            String[] columns = {"ID Métrica", "Nombre Producto", "Producto (ASIN)", "Fecha", "Unidades Vendidas", "Inversión Ads", "Ingresos"};
+    @Transactional(readOnly = true)
+    public void writeMetricsExcel(OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXCEL_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try (workbook; Stream<MetricExportRow> rows = metricRepository.streamExportRows(MetricExportService.MIN_DATE, MetricExportService.MAX_DATE)) {
 
             // Estilo negrita para encabezados
             CellStyle headerStyle = workbook.createCellStyle();
@@ -464,54 +652,77 @@ public class ReportService {
             headerFont.setBold(true);
             headerStyle.setFont(headerFont);
 
-            for (int i = 0; i < columns.length; i++) {
-                Cell cell = headerRow.createCell(i);
-                cell.setCellValue(columns[i]);
-                cell.setCellStyle(headerStyle);
-            }
+            Sheet sheet = createMetricsSheet(workbook, 1, headerStyle);
+            int sheetNumber = 1;
+            int rowIdx = 1;
 
             // 2. Llenado de datos en el nuevo orden
-            java.util.List<Metric> metrics = metricRepository.findAll();
-            int rowIdx = 1;
-            for (Metric metric : metrics) {
-                Row row = sheet.createRow(rowIdx++);
-                row.createCell(0).setCellValue(metric.getId());
-                row.createCell(1).setCellValue(metric.getProduct().getName());
-                row.createCell(2).setCellValue(metric.getProduct().getAsin());
-                row.createCell(3).setCellValue(metric.getDate().toString());
-                row.createCell(4).setCellValue(metric.getSalesUnits());
-                row.createCell(5).setCellValue(metric.getAdSpend());
-                row.createCell(6).setCellValue(metric.getRevenue());
-            }
+            Iterator<MetricExportRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                MetricExportRow metric = iterator.next();
+
+                // Una hoja admite 1,048,576 filas: los históricos más grandes continúan en otra hoja
+                if (rowIdx > SpreadsheetVersion.EXCEL2007.getLastRowIndex()) {
+                    sheet = createMetricsSheet(workbook, ++sheetNumber, headerStyle);
+                    rowIdx = 1;
+                }
 
-            // Ajustar ancho de columnas automático
-            for (int i = 0; i < columns.length; i++) {
-                sheet.autoSizeColumn(i);
+                Row row = sheet.createRow(rowIdx++);
+                row.createCell(0).setCellValue(metric.id());
+                row.createCell(1).setCellValue(metric.productName());
+                row.createCell(2).setCellValue(metric.asin());
+                row.createCell(3).setCellValue(metric.date().toString());
+                row.createCell(4).setCellValue(metric.salesUnits());
+                row.createCell(5).setCellValue(metric.adSpend());
+                row.createCell(6).setCellValue(metric.revenue());
             }
 
             workbook.write(out);
-            return out.toByteArray();
+        } finally {
+            // Borrar los temporales de las filas ya volcadas a disco
+            workbook.dispose();
+        }
+    }
+
+    private Sheet createMetricsSheet(SXSSFWorkbook workbook, int number, CellStyle headerStyle) {
+        Sheet sheet = workbook.createSheet(number == 1 ? "Histórico de Métricas" : "Histórico de Métricas (" + number + ")");
+
+        // 1. Encabezados en el nuevo orden
+        Row headerRow = sheet.createRow(0);
+        for (int i = 0; i < METRICS_EXCEL_COLUMNS.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(METRICS_EXCEL_COLUMNS[i]);
+            cell.setCellStyle(headerStyle);
+            // Ancho fijo en unidades de 1/256 de carácter
+            sheet.setColumnWidth(i, METRICS_EXCEL_WIDTHS[i] * 256);
         }
+        return sheet;
     }
 
     // Reporte PDF Detallado de Riesgo (Montecarlo) para un producto
-    public byte[] generateRiskPdf(Long productId) throws DocumentException {
-        // 1. Obtener datos
+    // 1. Obtener datos (antes de abrir la respuesta)
+    public RiskReport prepareRiskReport(Long productId) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new RuntimeException("Producto no encontrado"));
 
-        Map<String, Object> riskData = predictionService.analyzeRisk(productId);
+        // Semilla fija: la simulación de descargas repetidas sale de la caché mientras no cambien precio ni costo
+        Map<String, Object> riskData = predictionService.analyzeRisk(productId, PredictionService.DEFAULT_RISK_ITERATIONS,
+                PredictionService.REPORT_RISK_SEED);
+        return new RiskReport(product, riskData);
+    }
+
+    public void writeRiskPdf(RiskReport report, OutputStream out) throws DocumentException {
+        Product product = report.product();
+        Map<String, Object> riskData = report.riskData();
 
-        int profitable = (int) riskData.get("profitable_scenarios");
-        int loss = (int) riskData.get("loss_scenarios");
-        int total = (int) riskData.get("total_simulations");
+        long profitable = ((Number) riskData.get("profitable_scenarios")).longValue();
+        long loss = ((Number) riskData.get("loss_scenarios")).longValue();
+        long total = ((Number) riskData.get("total_simulations")).longValue();
         double successRate = (double) profitable / total * 100;
 
         // 2. Crear Documento PDF
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
         Document document = new Document();
-        PdfWriter.getInstance(document, out);
-        document.open();
+        openPdf(document, out);
 
         // Título
         Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18);
@@ -531,6 +742,32 @@ public class ReportService {
         document.add(new Paragraph("Escenarios con Ganancia: " + profitable));
         document.add(new Paragraph("Escenarios con Pérdida: " + loss));
 
+        // Distribución del margen unitario
+        document.add(new Paragraph("\nDistribución del Margen Unitario (Precio - Costo)", subtitleFont));
+        PdfPTable statsTable = new PdfPTable(2);
+        statsTable.setWidthPercentage(70);
+        statsTable.setSpacingBefore(5);
+        addPdfHeader(statsTable, "Indicador");
+        addPdfHeader(statsTable, "Valor");
+        statsTable.addCell("Margen promedio");
+        statsTable.addCell(String.format("$%.2f", ((Number) riskData.get("mean_margin")).doubleValue()));
+        statsTable.addCell("Desviación estándar");
+        statsTable.addCell(String.format("$%.2f", ((Number) riskData.get("margin_std_dev")).doubleValue()));
+        statsTable.addCell("Percentil 5 (escenario pesimista)");
+        statsTable.addCell(String.format("$%.2f", ((Number) riskData.get("margin_p5")).doubleValue()));
+        statsTable.addCell("Percentil 50 (mediana)");
+        statsTable.addCell(String.format("$%.2f", ((Number) riskData.get("margin_p50")).doubleValue()));
+        statsTable.addCell("Percentil 95 (escenario optimista)");
+        statsTable.addCell(String.format("$%.2f", ((Number) riskData.get("margin_p95")).doubleValue()));
+        statsTable.addCell("Pérdida esperada por unidad");
+        statsTable.addCell(String.format("$%.2f", ((Number) riskData.get("expected_loss")).doubleValue()));
+        document.add(statsTable);
+
+        @SuppressWarnings("unchecked")
+        java.util.List<RiskSimulationResult.HistogramBucket> histogram =
+                (java.util.List<RiskSimulationResult.HistogramBucket>) riskData.get("margin_histogram");
+        addMarginHistogram(document, histogram);
+
         // Veredicto Visual
         Font verdictFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 16,
                 successRate > 70 ? java.awt.Color.GREEN.darker() : java.awt.Color.RED);
@@ -546,6 +783,157 @@ public class ReportService {
         }
 
         document.close();
-        return out.toByteArray();
+    }
+
+    /**
+     * Datos del reporte de riesgo por lotes: una sola consulta de productos (con su cliente) y las simulaciones
+     * de Montecarlo de todos ellos en paralelo, con la misma semilla fija del reporte individual.
+     * clientId null = todo el catálogo.
+     */
+    public BatchRiskReport prepareBatchRiskReport(Long clientId) {
+        String scope;
+        java.util.List<Product> products;
+        if (clientId != null) {
+            Client client = clientRepository.findById(clientId)
+                    .orElseThrow(() -> new RuntimeException("Cliente no encontrado con ID: " + clientId));
+            scope = "Cliente: " + client.getName();
+            products = productRepository.findByClientIdsWithClient(java.util.List.of(clientId));
+        } else {
+            scope = "Catálogo completo";
+            products = productRepository.findAllWithClient();
+        }
+        if (products.isEmpty()) {
+            throw new RuntimeException("No hay productos para el reporte de riesgo.");
+        }
+
+        RiskSimulationResult[] simulations = predictionService.simulateRiskBatch(products,
+                PredictionService.DEFAULT_RISK_ITERATIONS, PredictionService.REPORT_RISK_SEED);
+
+        java.util.List<BatchRiskRow> rows = new ArrayList<>(products.size());
+        for (int i = 0; i < simulations.length; i++) {
+            rows.add(new BatchRiskRow(products.get(i), simulations[i]));
+        }
+        // Ranking: menor probabilidad de éxito primero; a igual probabilidad, mayor pérdida esperada
+        rows.sort(Comparator.comparingDouble(BatchRiskRow::successRate)
+                .thenComparing(row -> row.simulation().expectedLoss(), Comparator.reverseOrder()));
+
+        return new BatchRiskReport(scope, PredictionService.DEFAULT_RISK_ITERATIONS, rows);
+    }
+
+    public void writeBatchRiskPdf(BatchRiskReport report, OutputStream out) throws DocumentException {
+        Document document = new Document(PageSize.A4.rotate());
+        openPdf(document, out);
+
+        Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18);
+        Paragraph title = new Paragraph("Análisis de Riesgo Financiero por Lotes", titleFont);
+        title.setAlignment(Element.ALIGN_CENTER);
+        document.add(title);
+
+        document.add(new Paragraph(report.scope()));
+        document.add(new Paragraph("Fecha de Análisis: " + java.time.LocalDate.now()));
+        document.add(new Paragraph("Escenarios simulados por producto: " + report.iterations()));
+
+        // Resumen por nivel de riesgo (mismos umbrales que el reporte individual)
+        int safe = 0;
+        int moderate = 0;
+        int high = 0;
+        for (BatchRiskRow row : report.rows()) {
+            if (row.successRate() > 70) safe++;
+            else if (row.successRate() > 40) moderate++;
+            else high++;
+        }
+        Font subtitleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 14);
+        document.add(new Paragraph("\nResumen", subtitleFont));
+        document.add(new Paragraph("Productos analizados: " + report.rows().size()));
+        document.add(new Paragraph("Inversión segura: " + safe + " | Riesgo moderado: " + moderate + " | Alto riesgo: " + high));
+
+        document.add(new Paragraph("\nRanking de Riesgo (del más riesgoso al más seguro)", subtitleFont));
+
+        // OPTIMIZACIÓN: Tabla incompleta (LargeElement): las filas se escriben al documento por bloques
+        Font cellFont = FontFactory.getFont(FontFactory.HELVETICA, 8);
+        PdfPTable table = new PdfPTable(9);
+        table.setComplete(false);
+        table.setWidthPercentage(100);
+        table.setSpacingBefore(5);
+        table.setHeaderRows(1);
+        table.setWidths(new float[]{0.5f, 3.0f, 2.0f, 1.1f, 1.1f, 1.2f, 1.2f, 1.2f, 1.8f});
+        addPdfHeader(table, "#");
+        addPdfHeader(table, "Producto (ASIN)");
+        addPdfHeader(table, "Cliente");
+        addPdfHeader(table, "Precio");
+        addPdfHeader(table, "Costo");
+        addPdfHeader(table, "Prob. Éxito");
+        addPdfHeader(table, "Margen P5");
+        addPdfHeader(table, "Pérdida Esperada");
+        addPdfHeader(table, "Conclusión");
+
+        int rank = 0;
+        for (BatchRiskRow row : report.rows()) {
+            if (++rank % PDF_TABLE_FLUSH_ROWS == 0) {
+                document.add(table);
+            }
+            Product product = row.product();
+            RiskSimulationResult simulation = row.simulation();
+            double successRate = row.successRate();
+
+            table.addCell(new Phrase(String.valueOf(rank), cellFont));
+            table.addCell(new Phrase(product.getName() + "\n(" + product.getAsin() + ")", cellFont));
+            table.addCell(new Phrase(product.getClient() != null ? product.getClient().getName() : "-", cellFont));
+            table.addCell(new Phrase(String.format("$%.2f", product.getPrice()), cellFont));
+            table.addCell(new Phrase(String.format("$%.2f", product.getCost()), cellFont));
+
+            PdfPCell successCell = new PdfPCell(new Phrase(String.format("%.2f%%", successRate), cellFont));
+            successCell.setBackgroundColor(successRate > 70 ? java.awt.Color.GREEN :
+                                          successRate > 40 ? java.awt.Color.YELLOW : java.awt.Color.PINK);
+            table.addCell(successCell);
+
+            table.addCell(new Phrase(String.format("$%.2f", simulation.marginP5()), cellFont));
+            table.addCell(new Phrase(String.format("$%.2f", simulation.expectedLoss()), cellFont));
+            table.addCell(new Phrase(successRate > 70 ? "Inversión Segura" :
+                                     successRate > 40 ? "Riesgo Moderado" : "Alto Riesgo", cellFont));
+        }
+
+        table.setComplete(true);
+        document.add(table);
+        document.close();
+    }
+
+    // Histograma del margen: una fila por rango con una barra proporcional (verde = ganancia, rosa = pérdida)
+    private void addMarginHistogram(Document document, java.util.List<RiskSimulationResult.HistogramBucket> histogram) throws DocumentException {
+        Font smallFont = FontFactory.getFont(FontFactory.HELVETICA, 8);
+        double maxProbability = histogram.stream().mapToDouble(RiskSimulationResult.HistogramBucket::probability).max().orElse(0);
+        if (maxProbability <= 0) return;
+
+        PdfPTable table = new PdfPTable(3);
+        table.setWidthPercentage(100);
+        table.setWidths(new float[]{2.2f, 1f, 5f});
+        table.setSpacingBefore(10);
+        addPdfHeader(table, "Rango de Margen");
+        addPdfHeader(table, "Probabilidad");
+        addPdfHeader(table, "Distribución");
+
+        for (RiskSimulationResult.HistogramBucket bucket : histogram) {
+            table.addCell(new Phrase(String.format("$%.2f a $%.2f", bucket.from(), bucket.to()), smallFont));
+            table.addCell(new Phrase(String.format("%.2f%%", bucket.probability() * 100), smallFont));
+
+            // Barra: tabla anidada de dos celdas con anchos proporcionales a la probabilidad
+            float filled = (float) Math.max(0.001, bucket.probability() / maxProbability);
+            PdfPTable bar = new PdfPTable(2);
+            bar.setWidthPercentage(100);
+            bar.setWidths(new float[]{filled, Math.max(0.001f, 1f - filled)});
+            PdfPCell filledCell = new PdfPCell(new Phrase(" ", smallFont));
+            filledCell.setBorder(Rectangle.NO_BORDER);
+            filledCell.setBackgroundColor(bucket.to() > 0 ? java.awt.Color.GREEN : java.awt.Color.PINK);
+            PdfPCell emptyCell = new PdfPCell(new Phrase(" ", smallFont));
+            emptyCell.setBorder(Rectangle.NO_BORDER);
+            bar.addCell(filledCell);
+            bar.addCell(emptyCell);
+
+            PdfPCell barCell = new PdfPCell(bar);
+            barCell.setPadding(2);
+            table.addCell(barCell);
+        }
+
+        document.add(table);
     }
 }
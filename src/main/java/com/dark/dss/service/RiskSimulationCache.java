@@ -0,0 +1,56 @@
+package com.dark.dss.service;
+
+import com.dark.dss.analytics.RiskSimulationResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Resultados de simulaciones de Montecarlo con semilla, en una caché LRU acotada.
+ * Con la misma semilla la simulación es determinista, así que una solicitud repetida
+ * (mismo producto, precio, costo, iteraciones y semilla) se resuelve con una búsqueda en el mapa.
+ * ProductService desaloja las entradas de un producto cuando cambia su precio o costo.
+ */
+@Component
+public class RiskSimulationCache {
+
+    public record Key(Long productId, double price, double cost, long iterations, long seed) {
+    }
+
+    private final Map<Key, RiskSimulationResult> results;
+
+    public RiskSimulationCache(@Value("${dss.risk.cache-size:256}") int maxEntries) {
+        // LinkedHashMap en orden de acceso: la entrada menos usada recientemente sale primero
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, RiskSimulationResult> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    // Devuelve el resultado en caché o lo simula (fuera del candado, para no bloquear otras lecturas)
+    public RiskSimulationResult get(Key key, Supplier<RiskSimulationResult> simulation) {
+        synchronized (results) {
+            RiskSimulationResult cached = results.get(key);
+            if (cached != null) return cached;
+        }
+
+        RiskSimulationResult result = simulation.get();
+        synchronized (results) {
+            results.put(key, result);
+        }
+        return result;
+    }
+
+    // Desalojar todas las simulaciones de un producto (cambió su precio o costo, o se eliminó)
+    public void evictProduct(Long productId) {
+        if (productId == null) return;
+        synchronized (results) {
+            results.keySet().removeIf(key -> key.productId().equals(productId));
+        }
+    }
+}
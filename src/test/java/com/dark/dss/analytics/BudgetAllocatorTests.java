@@ -0,0 +1,107 @@
+package com.dark.dss.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * La búsqueda en paralelo (más productos con cruce que los que se recorren en el hilo actual) debe dar el mismo
+ * ingreso que enumerar todos los subconjuntos de productos con cruce, respetar topes y presupuesto, y ser
+ * determinista aunque las tareas terminen en otro orden.
+ */
+class BudgetAllocatorTests {
+
+    private static final double TOLERANCE = 1e-6;
+
+    @Test
+    void parallelSearchMatchesBruteForce() {
+        SplittableRandom random = new SplittableRandom(21);
+        for (int round = 0; round < 20; round++) {
+            BudgetAllocator.Item[] items = randomItems(random, 12, 8);
+            double budget = 500.0 + random.nextDouble() * 4000.0;
+
+            BudgetAllocator.Allocation allocation = BudgetAllocator.allocate(items, budget);
+
+            assertTrue(allocation.exact());
+            double spent = 0.0;
+            for (int i = 0; i < items.length; i++) {
+                assertTrue(allocation.spend()[i] >= 0.0 && allocation.spend()[i] <= items[i].cap() + TOLERANCE);
+                spent += allocation.spend()[i];
+            }
+            assertTrue(spent <= budget + TOLERANCE);
+            assertEquals(bruteForce(items, 12, budget), revenue(items, allocation.spend()), TOLERANCE * budget);
+        }
+    }
+
+    @Test
+    void sameInputGivesSameAllocation() {
+        BudgetAllocator.Item[] items = randomItems(new SplittableRandom(5), 14, 20);
+
+        double[] first = BudgetAllocator.allocate(items, 3000.0).spend();
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(first, BudgetAllocator.allocate(items, 3000.0).spend());
+        }
+    }
+
+    @Test
+    void tooManyCrossingProductsIsMarkedNotExact() {
+        BudgetAllocator.Item[] items = randomItems(new SplittableRandom(9), BudgetAllocator.MAX_EXACT_CROSSINGS + 1, 0);
+        assertFalse(BudgetAllocator.allocate(items, 1e9).exact());
+    }
+
+    // Productos con cruce (intercepto negativo, cruce por debajo del tope) seguidos de productos lineales
+    private static BudgetAllocator.Item[] randomItems(SplittableRandom random, int crossings, int linear) {
+        BudgetAllocator.Item[] items = new BudgetAllocator.Item[crossings + linear];
+        for (int i = 0; i < items.length; i++) {
+            double slope = 0.05 + random.nextDouble() * 0.5;
+            double cap = 200.0 + random.nextDouble() * 1500.0;
+            double intercept = i < crossings ? -slope * cap * random.nextDouble(0.1, 0.9) : random.nextDouble() * 50.0;
+            items[i] = new BudgetAllocator.Item(intercept, slope, 5.0 + random.nextDouble() * 45.0, cap);
+        }
+        return items;
+    }
+
+    // Mejor ingreso entre todos los subconjuntos de productos con cruce (los primeros `crossings`), con llenado
+    // voraz del resto del presupuesto por ingreso marginal
+    private static double bruteForce(BudgetAllocator.Item[] items, int crossings, double budget) {
+        Integer[] order = new Integer[items.length];
+        Arrays.setAll(order, i -> i);
+        Arrays.sort(order, Comparator.comparingDouble(i -> -items[i].price() * items[i].slope()));
+
+        double best = Double.NEGATIVE_INFINITY;
+        for (long subset = 0; subset < 1L << crossings; subset++) {
+            double[] spend = new double[items.length];
+            double remaining = budget;
+            for (int i = 0; i < crossings; i++) {
+                if ((subset & (1L << i)) != 0) {
+                    spend[i] = items[i].zeroCrossing();
+                    remaining -= spend[i];
+                }
+            }
+            if (remaining < 0) continue;
+            for (int i : order) {
+                if (i < crossings && (subset & (1L << i)) == 0) continue;
+                double take = Math.min(remaining, items[i].cap() - spend[i]);
+                spend[i] += take;
+                remaining -= take;
+            }
+            best = Math.max(best, revenue(items, spend));
+        }
+        return best;
+    }
+
+    private static double revenue(BudgetAllocator.Item[] items, double[] spend) {
+        double total = 0.0;
+        for (int i = 0; i < items.length; i++) {
+            total += items[i].price() * Math.max(0.0, items[i].intercept() + items[i].slope() * spend[i]);
+        }
+        return total;
+    }
+}
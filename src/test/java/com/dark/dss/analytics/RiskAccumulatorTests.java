@@ -0,0 +1,107 @@
+package com.dark.dss.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * El histograma de RiskAccumulator debe dar los mismos percentiles que la muestra ordenada (error máximo
+ * de un bin) y combinar acumuladores parciales sin perder escenarios.
+ */
+class RiskAccumulatorTests {
+
+    private static final double PRICE = 100.0;
+    private static final double COST = 92.0;
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void quantilesMatchSortedSampleWithinOneBin() {
+        double[] margins = simulatedMargins(11);
+        RiskAccumulator accumulator = new RiskAccumulator(PRICE, COST);
+        for (double margin : margins) {
+            accumulator.add(margin);
+        }
+
+        double[] sorted = margins.clone();
+        Arrays.sort(sorted);
+        for (double q : new double[]{0.01, 0.05, 0.25, 0.50, 0.75, 0.95, 0.99}) {
+            double expected = sorted[(int) Math.ceil(q * sorted.length) - 1];
+            assertEquals(expected, accumulator.quantile(q), accumulator.binWidth(), "percentil " + q);
+        }
+    }
+
+    @Test
+    void summaryMatchesSampleMoments() {
+        double[] margins = simulatedMargins(12);
+        RiskAccumulator accumulator = new RiskAccumulator(PRICE, COST);
+        for (double margin : margins) {
+            accumulator.add(margin);
+        }
+
+        double mean = Arrays.stream(margins).average().orElseThrow();
+        double variance = Arrays.stream(margins).map(m -> (m - mean) * (m - mean)).sum() / (margins.length - 1);
+        long profitable = Arrays.stream(margins).filter(m -> m > 0).count();
+        double expectedLoss = Arrays.stream(margins).map(m -> Math.max(0.0, -m)).sum() / margins.length;
+
+        RiskSimulationResult result = accumulator.summarize();
+        assertEquals(profitable, result.profitable());
+        assertEquals(SAMPLES - profitable, result.loss());
+        assertEquals(mean, result.meanMargin(), 1e-9);
+        assertEquals(variance, result.marginVariance(), 1e-6 * variance);
+        assertEquals(expectedLoss, result.expectedLoss(), 1e-9);
+
+        double probability = result.histogram().stream()
+                .mapToDouble(RiskSimulationResult.HistogramBucket::probability).sum();
+        assertEquals(1.0, probability, 1e-9);
+    }
+
+    @Test
+    void mergedAccumulatorsMatchSingleAccumulator() {
+        double[] margins = simulatedMargins(13);
+        RiskAccumulator single = new RiskAccumulator(PRICE, COST);
+        RiskAccumulator[] parts = {
+                new RiskAccumulator(PRICE, COST), new RiskAccumulator(PRICE, COST), new RiskAccumulator(PRICE, COST)};
+        for (int i = 0; i < margins.length; i++) {
+            single.add(margins[i]);
+            parts[i % parts.length].add(margins[i]);
+        }
+        RiskAccumulator merged = parts[0].merge(parts[1]).merge(parts[2]).merge(new RiskAccumulator(PRICE, COST));
+
+        RiskSimulationResult expected = single.summarize();
+        RiskSimulationResult actual = merged.summarize();
+        assertEquals(expected.profitable(), actual.profitable());
+        assertEquals(expected.loss(), actual.loss());
+        assertEquals(expected.meanMargin(), actual.meanMargin(), 1e-9);
+        assertEquals(expected.marginVariance(), actual.marginVariance(), 1e-6 * expected.marginVariance());
+        // Mismo histograma: los percentiles coinciden exactamente
+        assertEquals(expected.marginP5(), actual.marginP5(), 0.0);
+        assertEquals(expected.marginP50(), actual.marginP50(), 0.0);
+        assertEquals(expected.marginP95(), actual.marginP95(), 0.0);
+        assertEquals(expected.histogram(), actual.histogram());
+    }
+
+    @Test
+    void emptyAccumulatorHasNoDistribution() {
+        RiskSimulationResult result = new RiskAccumulator(PRICE, COST).summarize();
+
+        assertEquals(0, result.total());
+        assertTrue(Double.isNaN(result.meanMargin()));
+        assertTrue(Double.isNaN(result.marginP50()));
+    }
+
+    // Márgenes con las mismas variaciones del ±15% que simulan los núcleos
+    private static double[] simulatedMargins(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] margins = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            double price = PRICE * random.nextDouble(MonteCarloRiskSimulator.MIN_VARIATION, MonteCarloRiskSimulator.MAX_VARIATION);
+            double cost = COST * random.nextDouble(MonteCarloRiskSimulator.MIN_VARIATION, MonteCarloRiskSimulator.MAX_VARIATION);
+            margins[i] = price - cost;
+        }
+        return margins;
+    }
+}
@@ -0,0 +1,87 @@
+package com.dark.dss.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Paridad de los núcleos de Montecarlo. Con la misma semilla cada núcleo es determinista; el vectorial usa
+ * un generador por carril, así que sus conteos no son idénticos a los del escalar pero deben coincidir
+ * dentro del error de muestreo.
+ */
+class RiskKernelTests {
+
+    private static final double PRICE = 100.0;
+    private static final double COST = 92.0;
+    private static final long ITERATIONS = 1_000_000;
+    private static final long SEED = 42;
+
+    // Siete desviaciones estándar de la diferencia entre dos proporciones independientes de ITERATIONS escenarios
+    private static final double RATE_TOLERANCE = 7 * Math.sqrt(2 * 0.25 / ITERATIONS);
+
+    @Test
+    void sameSeedGivesSameResult() {
+        RiskKernel kernel = RiskKernels.scalar();
+        RiskSimulationResult first = simulate(kernel, ITERATIONS);
+        RiskSimulationResult second = simulate(kernel, ITERATIONS);
+
+        assertEquals(first.profitable(), second.profitable());
+        assertEquals(first.meanMargin(), second.meanMargin(), 0.0);
+        assertEquals(first.marginP50(), second.marginP50(), 0.0);
+    }
+
+    @Test
+    void selectFallsBackToScalar() {
+        assertEquals("scalar", RiskKernels.select("scalar").name());
+        assertEquals("scalar", RiskKernels.select("desconocido").name());
+        if (!RiskKernels.isVectorAvailable()) {
+            assertEquals("scalar", RiskKernels.select("vector").name());
+        }
+    }
+
+    @Test
+    void vectorKernelMatchesScalarProfitableRate() {
+        RiskKernel vector = vectorKernel();
+        RiskSimulationResult scalarResult = simulate(RiskKernels.scalar(), ITERATIONS);
+        RiskSimulationResult vectorResult = simulate(vector, ITERATIONS);
+
+        assertEquals(ITERATIONS, vectorResult.total());
+        double scalarRate = (double) scalarResult.profitable() / ITERATIONS;
+        double vectorRate = (double) vectorResult.profitable() / ITERATIONS;
+        assertEquals(scalarRate, vectorRate, RATE_TOLERANCE);
+
+        // La distribución del margen también coincide (ancho del rango / 2048 por bin)
+        double binWidth = new RiskAccumulator(PRICE, COST).binWidth();
+        assertEquals(scalarResult.meanMargin(), vectorResult.meanMargin(), 0.1);
+        assertEquals(scalarResult.marginP5(), vectorResult.marginP5(), 0.1 + binWidth);
+        assertEquals(scalarResult.marginP95(), vectorResult.marginP95(), 0.1 + binWidth);
+
+        // Determinista con la misma semilla
+        assertEquals(vectorResult.profitable(), simulate(vector, ITERATIONS).profitable());
+    }
+
+    @Test
+    void vectorKernelSimulatesTheTailThatDoesNotFillAVector() {
+        RiskKernel vector = vectorKernel();
+        for (long iterations : new long[]{1, 3, 1_000_003}) {
+            RiskSimulationResult result = simulate(vector, iterations);
+            assertEquals(iterations, result.total());
+            assertTrue(result.profitable() <= iterations);
+        }
+    }
+
+    private static RiskKernel vectorKernel() {
+        assumeTrue(RiskKernels.isVectorAvailable(), "JVM sin --add-modules jdk.incubator.vector");
+        RiskKernel vector = RiskKernels.select("vector");
+        assertEquals("vector", vector.name());
+        return vector;
+    }
+
+    private static RiskSimulationResult simulate(RiskKernel kernel, long iterations) {
+        return MonteCarloRiskSimulator.simulate(PRICE, COST, iterations, new SplittableRandom(SEED), kernel);
+    }
+}
@@ -0,0 +1,192 @@
+package com.dark.dss.analytics;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Las sumas persistidas (SufficientStatistics) y el acumulador de ventanas (BivariateAccumulator) deben producir
+ * la misma recta, R² y correlación que un ajuste OLS directo de dos pasadas sobre los mismos datos,
+ * también después de quitar observaciones y de combinar parciales.
+ */
+class SufficientStatisticsTests {
+
+    private static final int SAMPLES = 500;
+    private static final double TOLERANCE = 1e-9;
+
+    private double[] x;
+    private double[] y;
+
+    @BeforeEach
+    void setUp() {
+        SplittableRandom random = new SplittableRandom(7);
+        x = new double[SAMPLES];
+        y = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            x[i] = 200.0 + 1800.0 * random.nextDouble();
+            y[i] = Math.round(40.0 + 0.35 * x[i] + random.nextGaussian() * 25.0);
+        }
+    }
+
+    @Test
+    void sufficientStatisticsMatchDirectFit() {
+        SufficientStatistics stats = new SufficientStatistics();
+        for (int i = 0; i < SAMPLES; i++) {
+            stats.add(x[i], y[i]);
+        }
+
+        assertSameFit(directFit(0, SAMPLES), stats.toModel());
+        assertEquals(directCorrelation(0, SAMPLES), stats.correlation(), TOLERANCE);
+    }
+
+    @Test
+    void removingObservationsRestoresPreviousSums() {
+        SufficientStatistics stats = new SufficientStatistics();
+        for (int i = 0; i < SAMPLES; i++) {
+            stats.add(x[i], y[i]);
+        }
+        // Métricas eliminadas: el delta negativo deja las sumas del resto
+        for (int i = 0; i < 100; i++) {
+            stats.remove(x[i], y[i]);
+        }
+
+        assertEquals(SAMPLES - 100, stats.count());
+        assertSameFit(directFit(100, SAMPLES), stats.toModel());
+        assertEquals(directCorrelation(100, SAMPLES), stats.correlation(), TOLERANCE);
+    }
+
+    @Test
+    void deltasAddUpLikeTheDatabaseUpsert() {
+        // Carga masiva: un delta por bloque, sumado campo a campo como en applyDelta
+        SufficientStatistics first = new SufficientStatistics();
+        SufficientStatistics second = new SufficientStatistics();
+        for (int i = 0; i < SAMPLES; i++) {
+            (i < SAMPLES / 3 ? first : second).add(x[i], y[i]);
+        }
+        SufficientStatistics stored = new SufficientStatistics(first.count() + second.count(),
+                first.sumX() + second.sumX(), first.sumY() + second.sumY(), first.sumXY() + second.sumXY(),
+                first.sumXX() + second.sumXX(), first.sumYY() + second.sumYY());
+
+        assertSameFit(directFit(0, SAMPLES), stored.toModel());
+    }
+
+    @Test
+    void emptyOrConstantAdSpendCannotBeFitted() {
+        SufficientStatistics empty = new SufficientStatistics();
+        assertTrue(empty.isEmpty());
+        assertThrows(RuntimeException.class, empty::toModel);
+
+        SufficientStatistics constant = new SufficientStatistics();
+        constant.add(500.0, 10.0);
+        constant.add(500.0, 20.0);
+        constant.add(500.0, 30.0);
+        assertThrows(RuntimeException.class, constant::toModel);
+        assertTrue(Double.isNaN(constant.correlation()));
+    }
+
+    @Test
+    void accumulatorMatchesDirectFit() {
+        BivariateAccumulator accumulator = new BivariateAccumulator();
+        for (int i = 0; i < SAMPLES; i++) {
+            accumulator.add(x[i], y[i]);
+        }
+
+        assertSameFit(directFit(0, SAMPLES), accumulator.toModel());
+        assertEquals(directCorrelation(0, SAMPLES), accumulator.correlation(), TOLERANCE);
+    }
+
+    @Test
+    void slidingWindowMatchesFitOfTheWindow() {
+        int window = 60;
+        BivariateAccumulator accumulator = new BivariateAccumulator();
+        for (int i = 0; i < SAMPLES; i++) {
+            accumulator.add(x[i], y[i]);
+            if (i >= window) {
+                accumulator.remove(x[i - window], y[i - window]);
+            }
+            if (i >= window - 1 && i % 50 == 0) {
+                int from = i - window + 1;
+                assertEquals(window, accumulator.count());
+                assertSameFit(directFit(from, i + 1), accumulator.toModel());
+                assertEquals(directCorrelation(from, i + 1), accumulator.correlation(), TOLERANCE);
+            }
+        }
+    }
+
+    @Test
+    void mergedPartialsMatchSingleAccumulator() {
+        BivariateAccumulator left = new BivariateAccumulator();
+        BivariateAccumulator middle = new BivariateAccumulator();
+        BivariateAccumulator right = new BivariateAccumulator();
+        for (int i = 0; i < SAMPLES; i++) {
+            (i < 120 ? left : i < 121 ? middle : right).add(x[i], y[i]);
+        }
+
+        BivariateAccumulator merged = new BivariateAccumulator()
+                .merge(left)
+                .merge(new BivariateAccumulator())
+                .merge(middle)
+                .merge(right);
+
+        assertEquals(SAMPLES, merged.count());
+        assertSameFit(directFit(0, SAMPLES), merged.toModel());
+        assertEquals(directCorrelation(0, SAMPLES), merged.correlation(), TOLERANCE);
+    }
+
+    @Test
+    void removingTheLastObservationResetsTheAccumulator() {
+        BivariateAccumulator accumulator = new BivariateAccumulator();
+        accumulator.add(x[0], y[0]);
+        accumulator.remove(x[0], y[0]);
+
+        assertEquals(0, accumulator.count());
+        assertTrue(Double.isNaN(accumulator.correlation()));
+    }
+
+    // OLS de referencia en dos pasadas sobre [from, to)
+    private RegressionModel directFit(int from, int to) {
+        int n = to - from;
+        double meanX = 0.0;
+        double meanY = 0.0;
+        for (int i = from; i < to; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= n;
+        meanY /= n;
+
+        double sxx = 0.0;
+        double sxy = 0.0;
+        double syy = 0.0;
+        for (int i = from; i < to; i++) {
+            sxx += (x[i] - meanX) * (x[i] - meanX);
+            sxy += (x[i] - meanX) * (y[i] - meanY);
+            syy += (y[i] - meanY) * (y[i] - meanY);
+        }
+        double slope = sxy / sxx;
+        double intercept = meanY - slope * meanX;
+        double sse = 0.0;
+        for (int i = from; i < to; i++) {
+            double residual = y[i] - (intercept + slope * x[i]);
+            sse += residual * residual;
+        }
+        return new RegressionModel(intercept, slope, 1.0 - sse / syy, n);
+    }
+
+    private double directCorrelation(int from, int to) {
+        RegressionModel fit = directFit(from, to);
+        return Math.signum(fit.slope()) * Math.sqrt(fit.rSquared());
+    }
+
+    private static void assertSameFit(RegressionModel expected, RegressionModel actual) {
+        assertEquals(expected.samples(), actual.samples());
+        assertEquals(expected.slope(), actual.slope(), TOLERANCE * Math.abs(expected.slope()));
+        assertEquals(expected.intercept(), actual.intercept(), 1e-7 * Math.max(1.0, Math.abs(expected.intercept())));
+        assertEquals(expected.rSquared(), actual.rSquared(), TOLERANCE);
+    }
+}
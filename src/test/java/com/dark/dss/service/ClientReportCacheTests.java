@@ -0,0 +1,164 @@
+package com.dark.dss.service;
+
+import com.dark.dss.entity.Client;
+import com.dark.dss.entity.Product;
+import com.dark.dss.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Invalidación de los fragmentos por cliente del reporte de predicciones: un fragmento calculado con datos
+ * leídos antes de una marca nunca se guarda, tampoco cuando el producto marcado aún no tiene cliente conocido
+ * o cuando la marca se hizo dentro de una transacción que confirma después.
+ */
+@ExtendWith(MockitoExtension.class)
+class ClientReportCacheTests {
+
+    private static final long CLIENT_A = 1L;
+    private static final long CLIENT_B = 2L;
+    private static final long PRODUCT = 10L;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private final ClientReportCache cache = new ClientReportCache();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void putWithCurrentGenerationIsKept() {
+        ReportService.ClientSnapshot snapshot = snapshot(PRODUCT);
+        cache.put(CLIENT_A, cache.generation(CLIENT_A), snapshot);
+
+        assertSame(snapshot, cache.get(CLIENT_A));
+    }
+
+    @Test
+    void putAfterConcurrentClientMarkIsDiscarded() {
+        long generation = cache.generation(CLIENT_A);
+        cache.markClientDirty(CLIENT_A);
+        cache.put(CLIENT_A, generation, snapshot(PRODUCT));
+
+        assertNull(cache.get(CLIENT_A));
+    }
+
+    @Test
+    void putAfterConcurrentProductMarkIsDiscarded() {
+        cache.put(CLIENT_A, cache.generation(CLIENT_A), snapshot(PRODUCT));
+        // Otro reporte leyó la generación y los datos antes de que cambiaran las métricas del producto
+        long generation = cache.generation(CLIENT_A);
+
+        cache.markProductDirty(PRODUCT);
+        assertNull(cache.get(CLIENT_A));
+
+        cache.put(CLIENT_A, generation, snapshot(PRODUCT));
+        assertNull(cache.get(CLIENT_A));
+    }
+
+    @Test
+    void unresolvedProductMarkInvalidatesFragmentsBeingComputed() {
+        // Ningún fragmento guardado contiene el producto: no se sabe a qué cliente pertenece
+        long generationA = cache.generation(CLIENT_A);
+        long generationB = cache.generation(CLIENT_B);
+
+        cache.markProductDirty(PRODUCT);
+
+        cache.put(CLIENT_A, generationA, snapshot(PRODUCT));
+        cache.put(CLIENT_B, generationB, snapshot(20L));
+        assertNull(cache.get(CLIENT_A));
+        assertNull(cache.get(CLIENT_B));
+
+        // Un cálculo que empieza después de la marca sí se guarda
+        cache.put(CLIENT_B, cache.generation(CLIENT_B), snapshot(20L));
+        assertNotNull(cache.get(CLIENT_B));
+    }
+
+    @Test
+    void productMovedBetweenClientsMarksBothClientsDirty() {
+        cache.put(CLIENT_A, cache.generation(CLIENT_A), snapshot(PRODUCT));
+        cache.put(CLIENT_B, cache.generation(CLIENT_B), snapshot(20L));
+
+        Product stored = product(PRODUCT, client(CLIENT_A));
+        Product details = product(PRODUCT, client(CLIENT_B));
+        when(productRepository.findById(PRODUCT)).thenReturn(Optional.of(stored));
+        when(productRepository.save(any(Product.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        new ProductService(productRepository, new RiskSimulationCache(16), cache).update(PRODUCT, details);
+
+        // El cliente anterior se resuelve por el producto y el nuevo por su ID
+        assertNull(cache.get(CLIENT_A));
+        assertNull(cache.get(CLIENT_B));
+    }
+
+    @Test
+    void markInsideTransactionFiresAgainAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.markClientDirty(CLIENT_A);
+
+        // Un reporte concurrente lee la generación después de la marca pero todavía ve los datos sin confirmar
+        cache.put(CLIENT_A, cache.generation(CLIENT_A), snapshot(PRODUCT));
+        assertNotNull(cache.get(CLIENT_A));
+
+        commit();
+        assertNull(cache.get(CLIENT_A));
+    }
+
+    @Test
+    void unresolvedProductMarkInsideTransactionFiresAgainAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.markProductDirty(PRODUCT);
+
+        long generation = cache.generation(CLIENT_A);
+        commit();
+
+        cache.put(CLIENT_A, generation, snapshot(PRODUCT));
+        assertNull(cache.get(CLIENT_A));
+    }
+
+    private static void commit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+    }
+
+    private static ReportService.ClientSnapshot snapshot(long productId) {
+        ReportService.ProductPrediction prediction = new ReportService.ProductPrediction(
+                product(productId, null), 120, 0.8, 2400.0, 140.0, 0.9);
+        return new ReportService.ClientSnapshot(List.of(prediction), new ReportService.PredictionTotals(1, 0.8, 2400.0));
+    }
+
+    private static Product product(long id, Client client) {
+        Product product = new Product();
+        product.setId(id);
+        product.setAsin("B0TEST" + id);
+        product.setName("Producto " + id);
+        product.setPrice(20.0);
+        product.setCost(12.0);
+        product.setClient(client);
+        return product;
+    }
+
+    private static Client client(long id) {
+        Client client = new Client();
+        client.setId(id);
+        return client;
+    }
+}
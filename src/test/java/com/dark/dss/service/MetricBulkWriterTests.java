@@ -0,0 +1,80 @@
+package com.dark.dss.service;
+
+import com.dark.dss.entity.Client;
+import com.dark.dss.entity.Metric;
+import com.dark.dss.entity.Product;
+import com.dark.dss.repository.ClientRepository;
+import com.dark.dss.repository.ProductRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ruta real de la carga masiva (MetricBulkWriter con Hibernate y PostgreSQL): las métricas deben insertarse en
+ * lotes JDBC, no con una sentencia por fila. Requiere la base de datos de application.properties, como el resto
+ * de las pruebas con contexto; la transacción de la prueba se revierte al terminar.
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Transactional
+class MetricBulkWriterTests {
+
+    private static final int ROWS = 1000;
+    private static final int BATCH_SIZE = 50;
+
+    @Autowired
+    private MetricBulkWriter bulkWriter;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void writeBatchesInserts() {
+        Client client = new Client();
+        client.setName("Cliente prueba");
+        client.setEmail("prueba@dss.local");
+        client.setPhone("0000000000");
+        clientRepository.save(client);
+
+        Product product = new Product();
+        product.setAsin("BULK-TEST-" + System.nanoTime());
+        product.setName("Producto prueba");
+        product.setPrice(19.9);
+        product.setCost(11.0);
+        product.setClient(client);
+        productRepository.save(product);
+
+        List<Metric> metrics = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            double adSpend = 200.0 + i;
+            metrics.add(new Metric(null, LocalDate.of(2024, 1, 1).plusDays(i), 100 + i, adSpend, (100 + i) * 19.9, product));
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        bulkWriter.write(metrics);
+
+        assertEquals(ROWS, statistics.getEntityInsertCount());
+        // Un INSERT preparado por lote y un nextval por bloque de 50 IDs (más un margen para el primer bloque del
+        // optimizador pooled); sin lotes serían ROWS sentencias de INSERT
+        long prepared = statistics.getPrepareStatementCount();
+        assertTrue(prepared <= 2L * (ROWS / BATCH_SIZE) + 2,
+                "Se prepararon " + prepared + " sentencias para " + ROWS + " filas");
+    }
+}
@@ -0,0 +1,151 @@
+package com.dark.dss.service;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.CreationHelper;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Lectura SAX de la plantilla de carga: valores entregados como texto (fechas ISO, números sin formato),
+ * filas en blanco sin valores y errores del RowHandler propagados tal cual (MetricService los usa para
+ * rechazar filas inválidas).
+ */
+class MetricSheetReaderTests {
+
+    private static final int COLUMNS = 5;
+    private static final String[] BLANK = {"", "", "", "", ""};
+
+    @TempDir
+    Path tempDir;
+
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        file = tempDir.resolve("metricas.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            CreationHelper helper = workbook.getCreationHelper();
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(helper.createDataFormat().getFormat("dd/mm/yyyy"));
+            CellStyle moneyStyle = workbook.createCellStyle();
+            moneyStyle.setDataFormat(helper.createDataFormat().getFormat("#,##0.00"));
+
+            Sheet sheet = workbook.createSheet("Métricas");
+            Row header = sheet.createRow(0);
+            String[] titles = {"ASIN", "Fecha", "Unidades", "Inversión", "Ingresos"};
+            for (int i = 0; i < titles.length; i++) {
+                header.createCell(i).setCellValue(titles[i]);
+            }
+
+            // Fila 2: fecha con formato de celda, montos con separador de miles, ASIN con espacios
+            Row valid = sheet.createRow(1);
+            valid.createCell(0).setCellValue("  B0TEST0001 ");
+            valid.createCell(1).setCellValue(LocalDate.of(2024, 3, 15));
+            valid.getCell(1).setCellStyle(dateStyle);
+            valid.createCell(2).setCellValue(12);
+            valid.createCell(3).setCellValue(1234.5);
+            valid.getCell(3).setCellStyle(moneyStyle);
+            valid.createCell(4).setCellValue(2399.99);
+            valid.getCell(4).setCellStyle(moneyStyle);
+
+            // Fila 3: en blanco
+            sheet.createRow(2);
+
+            // Fila 4: fecha como texto, celdas faltantes y una columna extra fuera de la plantilla
+            Row partial = sheet.createRow(3);
+            partial.createCell(0).setCellValue("B0TEST0002");
+            partial.createCell(1).setCellValue("2024/01/31");
+            partial.createCell(3).setCellValue(0.1);
+            partial.createCell(6).setCellValue("ignorada");
+
+            // Fila 5: unidades no numéricas (MetricService la rechaza)
+            Row invalid = sheet.createRow(4);
+            invalid.createCell(0).setCellValue("B0TEST0003");
+            invalid.createCell(1).setCellValue("2024-02-01");
+            invalid.createCell(2).setCellValue("doce");
+            invalid.createCell(3).setCellValue(10);
+            invalid.createCell(4).setCellValue(10);
+
+            // Fila 6: después de la inválida
+            Row last = sheet.createRow(5);
+            last.createCell(0).setCellValue("B0TEST0004");
+
+            try (OutputStream out = Files.newOutputStream(file)) {
+                workbook.write(out);
+            }
+        }
+    }
+
+    @Test
+    void deliversRawValuesAsText() throws IOException {
+        Map<Integer, String[]> rows = readAll();
+
+        assertArrayEquals(new String[]{"ASIN", "Fecha", "Unidades", "Inversión", "Ingresos"}, rows.get(1));
+        assertArrayEquals(new String[]{"B0TEST0001", "2024-03-15", "12", "1234.5", "2399.99"}, rows.get(2));
+        assertArrayEquals(new String[]{"B0TEST0002", "2024/01/31", "", "0.1", ""}, rows.get(4));
+        assertArrayEquals(new String[]{"B0TEST0003", "2024-02-01", "doce", "10", "10"}, rows.get(5));
+        assertArrayEquals(new String[]{"B0TEST0004", "", "", "", ""}, rows.get(6));
+    }
+
+    @Test
+    void blankRowsHaveNoValues() throws IOException {
+        Map<Integer, String[]> rows = readAll();
+
+        // Una fila vacía puede no llegar al handler; si llega, no arrastra valores de la fila anterior
+        assertArrayEquals(BLANK, rows.getOrDefault(3, BLANK));
+    }
+
+    @Test
+    void handlerErrorsStopTheReadAndPropagateUnchanged() {
+        List<Integer> processed = new ArrayList<>();
+
+        RuntimeException error = assertThrows(RuntimeException.class, () ->
+                MetricSheetReader.read(file, COLUMNS, (rowNumber, values) -> {
+                    if (rowNumber == 1 || values[0].isEmpty()) return;
+                    try {
+                        if (!values[2].isEmpty()) Integer.parseInt(values[2]);
+                    } catch (NumberFormatException e) {
+                        throw new RuntimeException("Error numérico en fila " + rowNumber);
+                    }
+                    processed.add(rowNumber);
+                }));
+
+        assertEquals("Error numérico en fila 5", error.getMessage());
+        // La fila 6 no se lee después del error
+        assertEquals(List.of(2, 4), processed);
+    }
+
+    @Test
+    void rejectsFilesThatAreNotWorkbooks() throws IOException {
+        Path notExcel = tempDir.resolve("metricas.xlsx.txt");
+        Files.writeString(notExcel, "ASIN,Fecha\nB0TEST0001,2024-01-01\n");
+
+        assertThrows(RuntimeException.class, () -> MetricSheetReader.read(notExcel, COLUMNS, (rowNumber, values) -> {
+        }));
+    }
+
+    // El arreglo de valores se reutiliza entre filas: se copia cada fila
+    private Map<Integer, String[]> readAll() throws IOException {
+        Map<Integer, String[]> rows = new LinkedHashMap<>();
+        MetricSheetReader.read(file, COLUMNS, (rowNumber, values) -> rows.put(rowNumber, values.clone()));
+        return rows;
+    }
+}
@@ -0,0 +1,203 @@
+package com.dark.dss.service;
+
+import com.dark.dss.analytics.SufficientStatistics;
+import com.dark.dss.entity.Product;
+import com.dark.dss.repository.MetricRepository;
+import com.dark.dss.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Reparto del presupuesto publicitario (optimizeBudget) con modelos exactos: las sumas de cada producto salen de
+ * puntos sobre una recta conocida, así que el reparto óptimo se calcula a mano.
+ */
+@ExtendWith(MockitoExtension.class)
+class PortfolioAnalyticsServiceTests {
+
+    private static final long CLIENT_ID = 7L;
+    private static final double TOLERANCE = 1e-6;
+
+    @Mock
+    private MetricRepository metricRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ProductStatisticsService statisticsService;
+
+    @InjectMocks
+    private PortfolioAnalyticsService service;
+
+    private final List<Product> products = new ArrayList<>();
+    private final Map<Long, SufficientStatistics> statistics = new HashMap<>();
+    private final List<Object[]> maxSpend = new ArrayList<>();
+
+    @Test
+    void fillsHighestMarginalRevenueFirstUpToItsCap() {
+        product(1L, 10.0, 10.0, 0.5, 300.0);   // $5 por dólar hasta $300
+        product(2L, 10.0, 10.0, 0.2, 1000.0);  // $2 por dólar hasta $1,000
+
+        Map<String, Object> result = optimize(500.0);
+
+        assertEquals(300.0, spend(result, 1L), TOLERANCE);
+        assertEquals(200.0, spend(result, 2L), TOLERANCE);
+        assertEquals(0.0, (Double) result.get("unallocated_budget"), TOLERANCE);
+        // 10 * (10 + 0.5 * 300) + 10 * (10 + 0.2 * 200)
+        assertEquals(2100.0, (Double) result.get("predicted_revenue"), TOLERANCE);
+        assertEquals(true, result.get("exact"));
+    }
+
+    @Test
+    void budgetAboveTheCapsIsLeftUnallocated() {
+        product(1L, 10.0, 10.0, 0.5, 300.0);
+        product(2L, 10.0, 10.0, 0.2, 1000.0);
+
+        Map<String, Object> result = optimize(2000.0);
+
+        assertEquals(300.0, spend(result, 1L), TOLERANCE);
+        assertEquals(1000.0, spend(result, 2L), TOLERANCE);
+        assertEquals(1300.0, (Double) result.get("allocated_budget"), TOLERANCE);
+        assertEquals(700.0, (Double) result.get("unallocated_budget"), TOLERANCE);
+    }
+
+    @Test
+    void crossingProductIsSkippedWhenTheBudgetCannotPassIt() {
+        product(1L, 10.0, 10.0, 0.2, 1000.0);
+        product(2L, 10.0, -100.0, 0.5, 600.0); // no vende hasta $200
+
+        Map<String, Object> result = optimize(150.0);
+
+        assertEquals(150.0, spend(result, 1L), TOLERANCE);
+        assertEquals(0.0, spend(result, 2L), TOLERANCE);
+        assertEquals(200.0, (Double) allocation(result, 2L).get("zero_units_ad_spend"), TOLERANCE);
+        assertEquals(0, allocation(result, 2L).get("predicted_units"));
+    }
+
+    @Test
+    void crossingProductIsFundedPastItsCrossingWhenItPays() {
+        product(1L, 10.0, 10.0, 0.2, 1000.0);  // $2 por dólar
+        product(2L, 10.0, -100.0, 0.5, 600.0); // $5 por dólar después de $200
+
+        Map<String, Object> result = optimize(500.0);
+
+        // 10 * (-100 + 0.5 * 500) + 10 * 10 = 1600 > 10 * (10 + 0.2 * 500) = 1100
+        assertEquals(0.0, spend(result, 1L), TOLERANCE);
+        assertEquals(500.0, spend(result, 2L), TOLERANCE);
+        assertEquals(1600.0, (Double) result.get("predicted_revenue"), TOLERANCE);
+    }
+
+    @Test
+    void searchPrefersTheLinearProductWhenTheCrossingEatsTheBudget() {
+        // Por ingreso medio en [0, tope] el producto 2 rinde $10 por dólar contra $9 del producto 1, pero con $950
+        // solo pasa su cruce por $50: un reparto voraz por ese rendimiento medio obtendría 10 * 500 = $5,000
+        product(1L, 10.0, 10.0, 0.9, 950.0);
+        product(2L, 10.0, -9000.0, 10.0, 1000.0);
+
+        Map<String, Object> result = optimize(950.0);
+
+        assertEquals(950.0, spend(result, 1L), TOLERANCE);
+        assertEquals(0.0, spend(result, 2L), TOLERANCE);
+        // 10 * (10 + 0.9 * 950)
+        assertEquals(8650.0, (Double) result.get("predicted_revenue"), TOLERANCE);
+    }
+
+    @Test
+    void negativeAndZeroSlopesReceiveNoBudget() {
+        product(1L, 10.0, 50.0, -0.1, 500.0);
+        product(2L, 10.0, 30.0, 0.0, 500.0);
+        product(3L, 10.0, 10.0, 0.2, 80.0);
+
+        Map<String, Object> result = optimize(100.0);
+
+        assertEquals(0.0, spend(result, 1L), TOLERANCE);
+        assertEquals(0.0, spend(result, 2L), TOLERANCE);
+        assertEquals(80.0, spend(result, 3L), TOLERANCE);
+        assertEquals(20.0, (Double) result.get("unallocated_budget"), TOLERANCE);
+        // Sin inversión siguen vendiendo su intercepto: 10 * 50 + 10 * 30 + 10 * (10 + 0.2 * 80)
+        assertEquals(1060.0, (Double) result.get("predicted_revenue"), TOLERANCE);
+    }
+
+    @Test
+    void productsWithoutEnoughHistoryAreExcluded() {
+        product(1L, 10.0, 10.0, 0.5, 300.0);
+        Product sparse = new Product();
+        sparse.setId(2L);
+        sparse.setName("Producto 2");
+        sparse.setPrice(10.0);
+        products.add(sparse);
+
+        Map<String, Object> result = optimize(100.0);
+
+        assertEquals(100.0, spend(result, 1L), TOLERANCE);
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> excluded = (List<Map<String, Object>>) result.get("excluded_products");
+        assertEquals(1, excluded.size());
+        assertEquals(2L, excluded.get(0).get("product_id"));
+    }
+
+    @Test
+    void rejectsNonPositiveBudgets() {
+        assertThrows(RuntimeException.class, () -> service.optimizeBudget(CLIENT_ID, 0.0));
+        assertThrows(RuntimeException.class, () -> service.optimizeBudget(CLIENT_ID, Double.NaN));
+        verifyNoInteractions(productRepository, statisticsService, metricRepository);
+    }
+
+    // Producto cuyas sumas corresponden exactamente a units = intercept + slope * adSpend
+    private void product(long id, double price, double intercept, double slope, double cap) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName("Producto " + id);
+        product.setPrice(price);
+        products.add(product);
+
+        SufficientStatistics stats = new SufficientStatistics();
+        for (double adSpend = 100.0; adSpend <= 400.0; adSpend += 100.0) {
+            stats.add(adSpend, intercept + slope * adSpend);
+        }
+        statistics.put(id, stats);
+        maxSpend.add(new Object[]{id, cap});
+    }
+
+    private Map<String, Object> optimize(double budget) {
+        when(productRepository.findByClientId(CLIENT_ID)).thenReturn(products);
+        when(statisticsService.findByProducts(anyList())).thenReturn(statistics);
+        when(metricRepository.findMaxAdSpendByClientId(CLIENT_ID)).thenReturn(maxSpend);
+        Map<String, Object> result = service.optimizeBudget(CLIENT_ID, budget);
+
+        double allocated = 0.0;
+        for (Long productId : statistics.keySet()) {
+            allocated += spend(result, productId);
+        }
+        assertEquals(allocated, (Double) result.get("allocated_budget"), TOLERANCE);
+        assertTrue(allocated <= budget + TOLERANCE);
+        return result;
+    }
+
+    private static double spend(Map<String, Object> result, long productId) {
+        return (Double) allocation(result, productId).get("ad_spend");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> allocation(Map<String, Object> result, long productId) {
+        for (Map<String, Object> item : (List<Map<String, Object>>) result.get("allocations")) {
+            if (item.get("product_id").equals(productId)) return item;
+        }
+        throw new AssertionError("Sin asignación para el producto " + productId);
+    }
+}